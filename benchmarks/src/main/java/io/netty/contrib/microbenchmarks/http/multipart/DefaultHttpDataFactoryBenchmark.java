@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.microbenchmarks.http.multipart;
+
+import io.netty.contrib.handler.codec.http.multipart.Attribute;
+import io.netty.contrib.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.contrib.handler.codec.http.multipart.FileUpload;
+import io.netty5.handler.codec.http.DefaultHttpRequest;
+import io.netty5.handler.codec.http.HttpMethod;
+import io.netty5.handler.codec.http.HttpRequest;
+import io.netty5.handler.codec.http.HttpVersion;
+import io.netty5.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the data created by a factory shared by many threads, as the event loops of a server share the
+ * factory of its decoders: each thread creates the data of its own requests, removes some of them from the clean
+ * list and cleans the request. Compare the score of {@link #createAndClean1Thread(Context)} with the score of
+ * {@link #createAndClean8Threads(Context)} to see how the factory scales.
+ */
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(jvmArgsAppend = {"-dsa",
+        "-da",
+        "-XX:+HeapDumpOnOutOfMemoryError",
+        "-XX:+UnlockDiagnosticVMOptions",
+        "-XX:+DebugNonSafepoints",
+        "-Dio.netty5.leakDetection.level=disabled",
+        "-Dio.netty5.buffer.leakDetectionEnabled=false",
+        "-Dio.netty5.buffer.lifecycleTracingEnabled=false"
+})
+public class DefaultHttpDataFactoryBenchmark extends AbstractMicrobenchmark {
+    private static final int FIELDS = 32;
+
+    @State(Scope.Benchmark)
+    public static class Context {
+        // In memory, so that only the bookkeeping of the factory is measured
+        final DefaultHttpDataFactory factory = new DefaultHttpDataFactory(Long.MAX_VALUE);
+    }
+
+    private static int createAndClean(DefaultHttpDataFactory factory) {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/up");
+        int created = 0;
+        for (int i = 0; i < FIELDS; i++) {
+            Attribute attribute = factory.createAttribute(request, "field", 5);
+            created++;
+            if ((i & 3) == 0) {
+                // kept by the application
+                factory.removeHttpDataFromClean(request, attribute);
+                attribute.close();
+            }
+        }
+        FileUpload fileUpload = factory.createFileUpload(request, "file", "file.txt", "text/plain", null,
+                                                         StandardCharsets.UTF_8, 5);
+        factory.removeHttpDataFromClean(request, fileUpload);
+        fileUpload.close();
+        factory.cleanRequestHttpData(request);
+        return created + 1;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int createAndClean1Thread(Context ctx) {
+        return createAndClean(ctx.factory);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int createAndClean8Threads(Context ctx) {
+        return createAndClean(ctx.factory);
+    }
+}
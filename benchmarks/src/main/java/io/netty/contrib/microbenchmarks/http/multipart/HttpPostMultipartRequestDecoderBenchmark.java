@@ -28,15 +28,24 @@ import io.netty5.handler.codec.http.HttpMethod;
 import io.netty5.handler.codec.http.HttpVersion;
 import io.netty5.microbench.util.AbstractMicrobenchmark;
 import java.nio.charset.StandardCharsets;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -59,11 +68,14 @@ public class HttpPostMultipartRequestDecoderBenchmark
     @State(Scope.Benchmark)
     public static class Context {
         final static String BOUNDARY = "01f136d9282f";
+        final static int FIELDS = 1000;
 
         final Supplier<Buffer> bodyStartBytesSupplier;
         final Supplier<Buffer> finalBigBytesSupplier;
         final Supplier<Buffer> bodyPartBigBytesSupplier;
+        final Supplier<Buffer> bodyPartDashBytesSupplier;
         final Supplier<Buffer> intermediaryBytesSupplier;
+        final Supplier<Buffer> manyFieldsBytesSupplier;
 
         public Context() {
             int size = 8 * 1024;
@@ -77,20 +89,112 @@ public class HttpPostMultipartRequestDecoderBenchmark
                     "\nContent-Disposition: form-data; name=\"msg1\"; filename=\"file1.txt\"\n\n" +
                     data).getBytes(StandardCharsets.UTF_8);
             byte[] bodyPartBigBytes = data.getBytes(StandardCharsets.UTF_8);
+            // Worst case for a naive delimiter search: content full of '-' and of "\n--" sequences
+            byte[] bodyPartDashBytes = new byte[size];
+            Arrays.fill(bodyPartDashBytes, (byte) '-');
+            for (int i = 0; i < size; i += 64) {
+                bodyPartDashBytes[i] = '\n';
+            }
             byte[] intermediaryBytes = ("\n--" + BOUNDARY +
                     "\nContent-Disposition: form-data; name=\"msg2\"; filename=\"file2.txt\"\n\n" +
                     data).getBytes(StandardCharsets.UTF_8);
             byte[] finalBigBytes = ("\n" + "--" + BOUNDARY + "--\n").getBytes(StandardCharsets.UTF_8);
+            // Form with many small fields, where the cost of the part headers dominates
+            StringBuilder manyFields = new StringBuilder();
+            for (int i = 0; i < FIELDS; i++) {
+                manyFields.append("--").append(BOUNDARY).append("\r\n")
+                          .append("Content-Disposition: form-data; name=\"field").append(i).append("\"\r\n")
+                          .append("Content-Type: text/plain; charset=UTF-8\r\n")
+                          .append("\r\n")
+                          .append("value").append(i).append("\r\n");
+            }
+            manyFields.append("--").append(BOUNDARY).append("--\r\n");
+            byte[] manyFieldsBytes = manyFields.toString().getBytes(StandardCharsets.UTF_8);
 
             bodyStartBytesSupplier = BufferAllocator.onHeapUnpooled().constBufferSupplier(bodyStartBytes);
             finalBigBytesSupplier = BufferAllocator.onHeapUnpooled().constBufferSupplier(finalBigBytes);
             bodyPartBigBytesSupplier = BufferAllocator.onHeapUnpooled().constBufferSupplier(bodyPartBigBytes);
+            bodyPartDashBytesSupplier = BufferAllocator.onHeapUnpooled().constBufferSupplier(bodyPartDashBytes);
             intermediaryBytesSupplier = BufferAllocator.onHeapUnpooled().constBufferSupplier(intermediaryBytes);
+            manyFieldsBytesSupplier = BufferAllocator.onHeapUnpooled().constBufferSupplier(manyFieldsBytes);
+        }
+    }
+
+    /**
+     * Reports the bytes allocated by the decoding per uploaded byte. Since every copy of the content allocates
+     * its destination, this is an approximation of the number of times each uploaded byte is copied before
+     * reaching its final {@code HttpData}.
+     * <p>
+     * Pooled buffers are not seen as allocations, so run with {@code -jvmArgsAppend
+     * -Dio.netty5.allocator.type=unpooled} to get meaningful values.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CopyCounters {
+        private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        public long uploadedBytes;
+        public long allocatedBytes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            uploadedBytes = 0;
+            allocatedBytes = 0;
+        }
+
+        public double allocatedBytesPerUploadedByte() {
+            return uploadedBytes == 0 ? 0 : (double) allocatedBytes / uploadedBytes;
+        }
+
+        static long threadAllocatedBytes() {
+            return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
         }
     }
 
-    public double testHighNumberChunks(Context ctx, boolean big, boolean noDisk) {
+    /**
+     * Reports the write system calls of the process per uploaded MB, as read from {@code /proc/self/io}, so only
+     * on Linux.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SyscallCounters {
+        private static final Path PROC_SELF_IO = Paths.get("/proc/self/io");
+
+        public long uploadedBytes;
+        public long writeSyscalls;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            uploadedBytes = 0;
+            writeSyscalls = 0;
+        }
+
+        public double writeSyscallsPerUploadedMB() {
+            return uploadedBytes == 0 ? 0 : (double) writeSyscalls * 1024 * 1024 / uploadedBytes;
+        }
+
+        static long writeSyscalls() {
+            if (!Files.isReadable(PROC_SELF_IO)) {
+                return 0;
+            }
+            try {
+                for (String line : Files.readAllLines(PROC_SELF_IO)) {
+                    if (line.startsWith("syscw:")) {
+                        return Long.parseLong(line.substring("syscw:".length()).trim());
+                    }
+                }
+            } catch (IOException | NumberFormatException ignored) {
+                // not available
+            }
+            return 0;
+        }
+    }
+
+    public double testHighNumberChunks(Context ctx, Supplier<Buffer> nextBufSupplier, boolean noDisk,
+                                       CopyCounters counters) {
         int chunkNumber = 64;
+        long uploadedBytes = 0;
 
         Buffer firstBuf = ctx.bodyStartBytesSupplier.get();
         Buffer finalBuf = ctx.finalBigBytesSupplier.get();
@@ -100,6 +204,7 @@ public class HttpPostMultipartRequestDecoderBenchmark
                           "multipart/form-data; boundary=" + ctx.BOUNDARY);
 
         long start = System.nanoTime();
+        long allocatedBytes = counters != null ? CopyCounters.threadAllocatedBytes() : 0;
 
         DefaultHttpDataFactory defaultHttpDataFactory =
                 new DefaultHttpDataFactory(noDisk? 1024 * 1024 : 16 * 1024);
@@ -107,16 +212,19 @@ public class HttpPostMultipartRequestDecoderBenchmark
                 new HttpPostRequestDecoder(defaultHttpDataFactory, req);
 
         try (firstBuf) {
+            uploadedBytes += firstBuf.readableBytes();
             decoder.offer(new DefaultHttpContent(firstBuf));
         }
 
         for (int i = 1; i < chunkNumber; i++) {
-            try (Buffer nextBuf = big ? ctx.bodyPartBigBytesSupplier.get() : ctx.intermediaryBytesSupplier.get()) {
+            try (Buffer nextBuf = nextBufSupplier.get()) {
+                uploadedBytes += nextBuf.readableBytes();
                 decoder.offer(new DefaultHttpContent(nextBuf));
             }
         }
 
         try(finalBuf) {
+            uploadedBytes += finalBuf.readableBytes();
             decoder.offer(new DefaultLastHttpContent(finalBuf));
         }
 
@@ -126,19 +234,130 @@ public class HttpPostMultipartRequestDecoderBenchmark
 
         long stop = System.nanoTime();
         double time = (stop - start) / 1000000.0;
+        if (counters != null) {
+            counters.allocatedBytes += CopyCounters.threadAllocatedBytes() - allocatedBytes;
+            counters.uploadedBytes += uploadedBytes;
+        }
+        defaultHttpDataFactory.cleanAllHttpData();
+        defaultHttpDataFactory.cleanRequestHttpData(req);
+        decoder.destroy();
+        return time;
+    }
+
+    public double testManyFields(Context ctx, int chunkSize, CopyCounters counters) {
+        DefaultHttpRequest req =
+                new DefaultHttpRequest(HttpVersion.HTTP_1_0, HttpMethod.POST, "/up");
+        req.headers().add(HttpHeaderNames.CONTENT_TYPE,
+                          "multipart/form-data; boundary=" + ctx.BOUNDARY);
+
+        long start = System.nanoTime();
+        long allocatedBytes = CopyCounters.threadAllocatedBytes();
+
+        DefaultHttpDataFactory defaultHttpDataFactory = new DefaultHttpDataFactory(false);
+        HttpPostRequestDecoder decoder =
+                new HttpPostRequestDecoder(defaultHttpDataFactory, req);
+
+        try (Buffer body = ctx.manyFieldsBytesSupplier.get()) {
+            counters.uploadedBytes += body.readableBytes();
+            while (body.readableBytes() > chunkSize) {
+                try (Buffer chunk = body.readSplit(chunkSize)) {
+                    decoder.offer(new DefaultHttpContent(chunk));
+                }
+            }
+            decoder.offer(new DefaultLastHttpContent(body));
+        }
+
+        while (decoder.hasNext()) {
+            InterfaceHttpData httpData = decoder.next();
+        }
+
+        long stop = System.nanoTime();
+        double time = (stop - start) / 1000000.0;
+        counters.allocatedBytes += CopyCounters.threadAllocatedBytes() - allocatedBytes;
         defaultHttpDataFactory.cleanAllHttpData();
         defaultHttpDataFactory.cleanRequestHttpData(req);
         decoder.destroy();
         return time;
     }
 
+    public double testDiskSmallChunks(Context ctx, int writeBufferSize, SyscallCounters counters) {
+        int chunkNumber = 64;
+        int chunkSize = 512;
+
+        DefaultHttpRequest req =
+                new DefaultHttpRequest(HttpVersion.HTTP_1_0, HttpMethod.POST, "/up");
+        req.headers().add(HttpHeaderNames.CONTENT_TYPE,
+                          "multipart/form-data; boundary=" + ctx.BOUNDARY);
+
+        long start = System.nanoTime();
+        long writeSyscalls = SyscallCounters.writeSyscalls();
+
+        DefaultHttpDataFactory defaultHttpDataFactory = new DefaultHttpDataFactory(true);
+        defaultHttpDataFactory.setWriteBufferSize(writeBufferSize);
+        HttpPostRequestDecoder decoder =
+                new HttpPostRequestDecoder(defaultHttpDataFactory, req);
+
+        for (int i = 0; i <= chunkNumber; i++) {
+            Supplier<Buffer> supplier = i == 0 ? ctx.bodyStartBytesSupplier : i == chunkNumber ?
+                    ctx.finalBigBytesSupplier : ctx.bodyPartBigBytesSupplier;
+            try (Buffer buf = supplier.get()) {
+                counters.uploadedBytes += buf.readableBytes();
+                while (buf.readableBytes() > chunkSize) {
+                    try (Buffer chunk = buf.readSplit(chunkSize)) {
+                        decoder.offer(new DefaultHttpContent(chunk));
+                    }
+                }
+                decoder.offer(i == chunkNumber ? new DefaultLastHttpContent(buf) : new DefaultHttpContent(buf));
+            }
+        }
+
+        while (decoder.hasNext()) {
+            InterfaceHttpData httpData = decoder.next();
+        }
+
+        long stop = System.nanoTime();
+        double time = (stop - start) / 1000000.0;
+        counters.writeSyscalls += SyscallCounters.writeSyscalls() - writeSyscalls;
+        defaultHttpDataFactory.cleanAllHttpData();
+        defaultHttpDataFactory.cleanRequestHttpData(req);
+        decoder.destroy();
+        return time;
+    }
+
+    @Benchmark
+    public double multipartRequestDecoderHigh(Context ctx, CopyCounters counters) {
+        return testHighNumberChunks(ctx, ctx.intermediaryBytesSupplier, true, counters);
+    }
+
+    @Benchmark
+    public double multipartRequestDecoderBig(Context ctx, CopyCounters counters) {
+        return testHighNumberChunks(ctx, ctx.bodyPartBigBytesSupplier, true, counters);
+    }
+
+    @Benchmark
+    public double multipartRequestDecoderDashes(Context ctx) {
+        return testHighNumberChunks(ctx, ctx.bodyPartDashBytesSupplier, true, null);
+    }
+
+    @Benchmark
+    public double multipartRequestDecoderManyFields(Context ctx, CopyCounters counters) {
+        return testManyFields(ctx, 1024, counters);
+    }
+
+    @Benchmark
+    public double multipartRequestDecoderManyFieldsSmallChunks(Context ctx, CopyCounters counters) {
+        // Headers and delimiters are often split across chunks, so the decoder often needs more data
+        return testManyFields(ctx, 64, counters);
+    }
+
     @Benchmark
-    public double multipartRequestDecoderHigh(Context ctx) {
-        return testHighNumberChunks(ctx,false, true);
+    public double multipartRequestDecoderDiskSmallChunks(Context ctx, SyscallCounters counters) {
+        // One write per decoded slice
+        return testDiskSmallChunks(ctx, 0, counters);
     }
 
     @Benchmark
-    public double multipartRequestDecoderBig(Context ctx) {
-        return testHighNumberChunks(ctx,true, true);
+    public double multipartRequestDecoderDiskSmallChunksWriteBehind(Context ctx, SyscallCounters counters) {
+        return testDiskSmallChunks(ctx, 64 * 1024, counters);
     }
 }
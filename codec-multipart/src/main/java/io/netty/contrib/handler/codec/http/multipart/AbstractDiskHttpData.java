@@ -18,7 +18,12 @@ package io.netty.contrib.handler.codec.http.multipart;
 import io.netty5.buffer.Buffer;
 import io.netty5.buffer.DefaultBufferAllocators;
 import io.netty5.channel.ChannelException;
+import io.netty5.channel.DefaultFileRegion;
+import io.netty5.channel.FileRegion;
 import io.netty5.handler.codec.http.HttpConstants;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.ImmediateEventExecutor;
+import io.netty5.util.concurrent.Promise;
 import io.netty5.util.internal.EmptyArrays;
 import io.netty5.util.internal.ObjectUtil;
 import io.netty5.util.internal.PlatformDependent;
@@ -31,9 +36,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 
 /**
  * Abstract Disk HttpData implementation
@@ -42,9 +57,46 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractDiskHttpData.class);
 
+    /**
+     * Size of the window of the file mapped by {@link #getChunk(int)} in mapped reads mode
+     */
+    private static final int MAPPED_WINDOW_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Maximum number of bytes copied by each transfer of {@link #renameTo(File)} across file systems
+     */
+    private static final long COPY_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Maximum size to which a file is preallocated from the defined size, which is given by the client
+     */
+    private static final long MAX_PREALLOCATED_SIZE = 64 * 1024 * 1024;
+
     private File file;
     private boolean isRenamed;
     private FileChannel fileChannel;
+    private Executor writeExecutor;
+    private long maxPendingWriteBytes;
+    private AsyncFileWriter writer;
+    /**
+     * Completed once the file written from the calling thread is forced later by the {@link DurabilityPolicy}, and
+     * moved to its destination if any, or {@code null}
+     */
+    private Future<Void> commit;
+    private int writeBufferSize;
+    private WriteBehindBuffer writeBehind;
+    private DurabilityPolicy durabilityPolicy = DurabilityPolicy.ALWAYS;
+    private boolean mappedReads;
+    private MappedByteBuffer chunkWindow;
+    private long chunkWindowPosition;
+    private long chunkPosition;
+    private Path destination;
+    private SpoolFile spool;
+    /**
+     * Owner of the extent of the content in the spool file, once started
+     */
+    private Object spoolExtent;
+    private long spoolOffset;
 
     protected AbstractDiskHttpData(String name, Charset charset, long size) {
         super(name, charset, size);
@@ -55,6 +107,257 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
         this.file = copy.file;
         this.isRenamed = copy.isRenamed;
         this.fileChannel = copy.fileChannel;
+        this.writeExecutor = copy.writeExecutor;
+        this.maxPendingWriteBytes = copy.maxPendingWriteBytes;
+        this.writer = copy.writer;
+        this.commit = copy.commit;
+        this.writeBufferSize = copy.writeBufferSize;
+        this.writeBehind = copy.writeBehind;
+        this.durabilityPolicy = copy.durabilityPolicy;
+        this.mappedReads = copy.mappedReads;
+        this.destination = copy.destination;
+        this.spool = copy.spool;
+        this.spoolExtent = copy.spoolExtent;
+        this.spoolOffset = copy.spoolOffset;
+    }
+
+    /**
+     * Write the content added with {@link #addContent(Buffer, boolean)} from the given executor instead of the
+     * calling thread, so that the event loop never waits for the disk.
+     * <p>
+     * The completion of the writes is given by {@link #writeFuture()}, and the producer should stop reading while
+     * {@link #isWritable()} is {@code false}, until {@link #writableFuture()} is completed.
+     *
+     * @param executor the executor of the writes, or {@code null} to write from the calling thread
+     * @param maxPendingBytes the maximum number of bytes added but not yet written before this data is not writable
+     */
+    public void setWriteExecutor(Executor executor, long maxPendingBytes) {
+        checkAccessible();
+        if (executor != null) {
+            ObjectUtil.checkPositive(maxPendingBytes, "maxPendingBytes");
+        }
+        if (writer != null || fileChannel != null) {
+            throw new IllegalStateException("Content already added");
+        }
+        writeExecutor = executor;
+        maxPendingWriteBytes = maxPendingBytes;
+    }
+
+    /**
+     * Coalesce the content added with {@link #addContent(Buffer, boolean)} in a write-behind buffer of the given
+     * size, so that the file is written with large writes of a multiple of this size instead of one write per
+     * added buffer. The buffer is flushed when full and when the last content is added.
+     *
+     * @param writeBufferSize the size of the buffer, for instance 64 KB, or {@code 0} to write each added buffer
+     */
+    public void setWriteBufferSize(int writeBufferSize) {
+        checkAccessible();
+        ObjectUtil.checkPositiveOrZero(writeBufferSize, "writeBufferSize");
+        if (writer != null || fileChannel != null) {
+            throw new IllegalStateException("Content already added");
+        }
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    /**
+     * Set when the content of the file is forced to the storage device, {@link DurabilityPolicy#ALWAYS} by default.
+     */
+    public void setDurabilityPolicy(DurabilityPolicy durabilityPolicy) {
+        this.durabilityPolicy = Objects.requireNonNull(durabilityPolicy, "durabilityPolicy");
+    }
+
+    /**
+     * Read the completed content by mapping the file in memory instead of copying it: {@link #usingBuffer} and
+     * {@link #getChunk(int)} then give read-only views of the mapped file, and {@link #getString(Charset)} decodes
+     * the mapped file directly. The mapped memory is released by the GC once no view is used anymore.
+     */
+    public void setMappedReads(boolean mappedReads) {
+        this.mappedReads = mappedReads;
+    }
+
+    /**
+     * Write the content directly to its final destination instead of a temporary file, so that it is never
+     * copied by {@link #renameTo(File)}: the content is written to a hidden file of the directory of the
+     * destination, which is atomically moved to the destination once completed. The completed file is then kept
+     * like a renamed one, and is not deleted by {@link #delete()}.
+     *
+     * @param destination the final file, or {@code null} to write a temporary file
+     */
+    public void setDestination(Path destination) {
+        checkAccessible();
+        if (file != null || spoolExtent != null) {
+            throw new IllegalStateException("Content already added");
+        }
+        if (destination != null) {
+            releaseSpool();
+        }
+        this.destination = destination;
+    }
+
+    /**
+     * Store the content as an extent of the given spool file shared with the other data of the request, instead
+     * of in its own temporary file. The content is then written from the calling thread, and copied to a file of
+     * its own only if requested by {@link #getFile()} or {@link #renameTo(File)}.
+     *
+     * @return {@code false} if the spool file is already deleted, the content being then stored as usual
+     */
+    boolean spoolTo(SpoolFile spool) {
+        checkAccessible();
+        if (file != null || this.spool != null) {
+            throw new IllegalStateException("Content already added");
+        }
+        if (!spool.retain()) {
+            return false;
+        }
+        this.spool = spool;
+        return true;
+    }
+
+    private void releaseSpool() {
+        if (spool != null) {
+            spool.complete(spoolExtent);
+            spool.release();
+            spool = null;
+            spoolExtent = null;
+            spoolOffset = 0;
+        }
+    }
+
+    /**
+     * @return the number of bytes appended to the extent of the content in the spool file
+     */
+    private int appendToSpool(Buffer buffer) throws IOException {
+        if (spoolExtent == null) {
+            spoolExtent = new Object();
+            spoolOffset = spool.begin(spoolExtent);
+        }
+        return spool.append(spoolExtent, buffer);
+    }
+
+    /**
+     * @return a copy of a range of the content from the spool file
+     */
+    private Buffer readSpool(long position, int length) throws IOException {
+        Buffer buffer = DefaultBufferAllocators.onHeapAllocator().allocate(length);
+        try {
+            int remaining = length;
+            int read;
+            while (remaining > 0 &&
+                   (read = spool.read(buffer, spoolOffset + position + length - remaining, remaining)) > 0) {
+                remaining -= read;
+            }
+            return buffer;
+        } catch (IOException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copy the content from the spool file to the given file.
+     *
+     * @return {@code true} if the whole content was copied
+     */
+    private boolean copySpoolTo(File dest) throws IOException {
+        long position = 0;
+        try (FileChannel out = new RandomAccessFile(dest, "rw").getChannel()) {
+            out.truncate(0);
+            while (position < size) {
+                long transferred = spool.transferTo(spoolOffset + position,
+                                                    Math.min(COPY_CHUNK_SIZE, size - position), out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+        if (position < size) {
+            if (!dest.delete()) {
+                logger.warn("Failed to delete: {}", dest);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static int checkLoadable(long length) {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("File too big to be loaded in memory");
+        }
+        return (int) length;
+    }
+
+    /**
+     * Map a region of the content of the file in memory, without copying it.
+     *
+     * @param position the position of the region in the file
+     * @param length the length of the region
+     * @return a read-only view of the region of the file
+     * @throws IOException if the file cannot be mapped
+     */
+    public ByteBuffer map(long position, int length) throws IOException {
+        checkAccessible();
+        awaitWrites();
+        if (file == null && spoolExtent == null || length == 0) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+        if (spool != null) {
+            return spool.map(spoolOffset + position, length);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid once the channel is closed
+            return channel.map(MapMode.READ_ONLY, position, length);
+        }
+    }
+
+    @Override
+    public Future<Void> writeFuture() {
+        Future<Void> completion = completionFuture();
+        return completion == null ? ImmediateEventExecutor.INSTANCE.newSucceededFuture(null) : completion;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return writer == null || writer.isWritable();
+    }
+
+    @Override
+    public Future<Void> writableFuture() {
+        return writer == null ? ImmediateEventExecutor.INSTANCE.newSucceededFuture(null) : writer.writableFuture();
+    }
+
+    /**
+     * @return the future completed once the file is written asynchronously or committed later, or {@code null}
+     */
+    private Future<Void> completionFuture() {
+        return writer != null ? writer.completionFuture() : commit;
+    }
+
+    /**
+     * Write the buffered content, or wait for the asynchronous writes and the commit of the content once
+     * completed, so that the file can be read.
+     */
+    private void awaitWrites() throws IOException {
+        if (writeBehind != null && fileChannel != null) {
+            writeBehind.flush(fileChannel);
+        }
+        Future<Void> completion = completionFuture();
+        if (completion == null || !isCompleted()) {
+            return;
+        }
+        try {
+            completion.asStage().sync();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (Exception e) {
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        if (destination != null && !isRenamed) {
+            // moved once written and forced
+            file = destination.toFile();
+            isRenamed = true;
+        }
     }
 
     /**
@@ -84,9 +387,15 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
     protected abstract boolean deleteOnExit();
 
     /**
-     * @return a new Temp File from getDiskFilename(), default prefix, postfix and baseDirectory
+     * @return a new Temp File from getDiskFilename(), default prefix, postfix and baseDirectory,
+     * or a new hidden file next to the destination if any
      */
     private File tempFile() throws IOException {
+        if (destination != null) {
+            // in the same directory, so that the completed file can be moved atomically
+            Path directory = destination.toAbsolutePath().getParent();
+            return Files.createTempFile(directory, "." + destination.getFileName(), ".part").toFile();
+        }
         String newpostfix;
         String diskFilename = getDiskFilename();
         if (diskFilename != null) {
@@ -119,38 +428,44 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
             if (definedSize > 0 && definedSize < size) {
                 throw new IOException("Out of size: " + size + " > " + definedSize);
             }
+            if (spool != null) {
+                // the previous extent, if any, is abandoned
+                spool.complete(spoolExtent);
+                spoolExtent = null;
+                size = appendToSpool(buffer);
+                spool.complete(spoolExtent);
+                setCompleted();
+                return;
+            }
             if (file == null) {
                 file = tempFile();
             }
             if (buffer.readableBytes() == 0) {
                 // empty file
-                if (!file.createNewFile()) {
-                    if (file.length() == 0) {
-                        return;
-                    } else {
-                        if (!file.delete() || !file.createNewFile()) {
-                            throw new IOException("file exists already: " + file);
-                        }
-                    }
+                if (!file.createNewFile() && file.length() != 0 && (!file.delete() || !file.createNewFile())) {
+                    throw new IOException("file exists already: " + file);
                 }
+                moveToDestination();
                 return;
             }
-            try(RandomAccessFile accessFile = new RandomAccessFile(file, "rw")) {
-                accessFile.setLength(0);
-                try(FileChannel localfileChannel = accessFile.getChannel()) {
-                    int length = buffer.readableBytes();
-                    int written;
-                    do
-                    {
-                        if ((written = buffer.transferTo(localfileChannel, length)) == -1) {
-                            break;
-                        }
-                        length = -written;
-                    } while (length > 0);
-                    localfileChannel.force(false);
-                    setCompleted();
-                }
+            FileChannel localfileChannel = new RandomAccessFile(file, "rw").getChannel();
+            try {
+                localfileChannel.truncate(0);
+                int length = buffer.readableBytes();
+                int written;
+                do
+                {
+                    if ((written = buffer.transferTo(localfileChannel, length)) == -1) {
+                        break;
+                    }
+                    length -= written;
+                } while (length > 0);
+            } catch (IOException | RuntimeException e) {
+                localfileChannel.close();
+                throw e;
             }
+            commit(localfileChannel);
+            setCompleted();
         }
     }
 
@@ -166,52 +481,194 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
                     throw new IOException("Out of size: " + (size + localsize) +
                             " > " + definedSize);
                 }
-                if (file == null) {
+                if (spool == null && file == null) {
                     file = tempFile();
                 }
-                if (fileChannel == null) {
-                    RandomAccessFile accessFile = new RandomAccessFile(file, "rw");
-                    fileChannel = accessFile.getChannel();
+                if (spool != null) {
+                    size += appendToSpool(buffer);
+                } else if (writeExecutor != null) {
+                    // the file is written from the executor, without waiting
+                    asyncFileWriter().write(buffer.readSplit(localsize));
+                    size += localsize;
+                } else {
+                    size += writeContent(buffer, localsize);
                 }
-
-                int written;
-                int remaining = localsize;
-                do
-                {
-                    if ((written = buffer.transferTo(fileChannel, remaining)) == -1) {
-                        break;
-                    }
-                    remaining -= written;
-                } while (remaining > 0);
-                size += localsize - remaining;
             }
         }
         if (last) {
+            if (spool != null) {
+                spool.complete(spoolExtent);
+                setCompleted();
+                return;
+            }
             if (file == null) {
                 file = tempFile();
             }
+            if (writeExecutor != null) {
+                asyncFileWriter().close();
+                setCompleted();
+                return;
+            }
             if (fileChannel == null) {
                 RandomAccessFile accessFile = new RandomAccessFile(file, "rw");
                 fileChannel = accessFile.getChannel();
             }
+            FileChannel localfileChannel = fileChannel;
+            fileChannel = null;
             try {
-                fileChannel.force(false);
+                if (writeBehind != null) {
+                    writeBehind.flush(localfileChannel);
+                }
+                if (preallocatedSize() > 0) {
+                    // the content may be shorter than the preallocated file
+                    localfileChannel.truncate(localfileChannel.position());
+                }
+            } catch (IOException e) {
+                localfileChannel.close();
+                throw e;
             } finally {
-                fileChannel.close();
+                closeWriteBehind();
             }
-            fileChannel = null;
+            commit(localfileChannel);
             setCompleted();
         } else {
             ObjectUtil.checkNotNullWithIAE(buffer, "buffer");
         }
     }
 
+    private AsyncFileWriter asyncFileWriter() {
+        if (writer == null) {
+            writer = new AsyncFileWriter(writeExecutor, maxPendingWriteBytes, writeBufferSize, durabilityPolicy,
+                                         file, preallocatedSize(), destination);
+        }
+        return writer;
+    }
+
+    /**
+     * Give the completed file to the {@link DurabilityPolicy}, and move it to its destination, if any, once forced.
+     */
+    private void commit(FileChannel channel) throws IOException {
+        Future<Void> forced = durabilityPolicy.completed(channel);
+        if (!forced.isDone()) {
+            // forced later: the file is moved and the write future completed once forced
+            commit = destination != null ? moveOnceForced(forced, file, destination, durabilityPolicy) : forced;
+            return;
+        }
+        if (forced.isFailed()) {
+            Throwable cause = forced.cause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        moveToDestination();
+    }
+
+    /**
+     * @return the future completed once the file is forced and moved to its destination
+     */
+    static Future<Void> moveOnceForced(Future<Void> forced, File file, Path destination,
+                                       DurabilityPolicy durabilityPolicy) {
+        Promise<Void> moved = ImmediateEventExecutor.INSTANCE.newPromise();
+        forced.addListener(future -> {
+            if (future.isFailed()) {
+                moved.setFailure(future.cause());
+                return;
+            }
+            try {
+                moveTo(file, destination, durabilityPolicy);
+                moved.setSuccess(null);
+            } catch (IOException e) {
+                moved.setFailure(e);
+            }
+        });
+        return moved.asFuture();
+    }
+
+    /**
+     * Move the completed file to its destination, if any.
+     */
+    private void moveToDestination() throws IOException {
+        if (destination != null) {
+            moveTo(file, destination, durabilityPolicy);
+            file = destination.toFile();
+            isRenamed = true;
+        }
+    }
+
+    /**
+     * Atomically move a completed file to its destination, in the same directory.
+     */
+    static void moveTo(File file, Path destination, DurabilityPolicy durabilityPolicy) throws IOException {
+        Files.move(file.toPath(), destination, StandardCopyOption.ATOMIC_MOVE);
+        durabilityPolicy.renamed(destination.toFile());
+    }
+
+    /**
+     * @return the number of bytes written to the file from the calling thread
+     */
+    private int writeContent(Buffer buffer, int localsize) throws IOException {
+        if (fileChannel == null) {
+            RandomAccessFile accessFile = new RandomAccessFile(file, "rw");
+            preallocate(accessFile, preallocatedSize());
+            fileChannel = accessFile.getChannel();
+        }
+        if (writeBufferSize > 0) {
+            if (writeBehind == null) {
+                writeBehind = new WriteBehindBuffer(writeBufferSize);
+            }
+            writeBehind.write(fileChannel, buffer);
+            return localsize;
+        }
+
+        int written;
+        int remaining = localsize;
+        do
+        {
+            if ((written = buffer.transferTo(fileChannel, remaining)) == -1) {
+                break;
+            }
+            remaining -= written;
+        } while (remaining > 0);
+        return localsize - remaining;
+    }
+
+    /**
+     * @return the size to which the file is preallocated, known from the Content-Length of the part, or {@code 0}
+     *         if the file is not preallocated since this size is unknown, above the maximum size, or too large
+     */
+    private long preallocatedSize() {
+        long maxSize = getMaxSize();
+        if (definedSize <= 0 || definedSize > MAX_PREALLOCATED_SIZE || maxSize >= 0 && definedSize > maxSize) {
+            return 0;
+        }
+        return definedSize;
+    }
+
+    /**
+     * Set the length of the new file to the given size, if any, the file being written as usual if it fails.
+     */
+    static void preallocate(RandomAccessFile accessFile, long preallocatedSize) {
+        if (preallocatedSize > 0) {
+            try {
+                accessFile.setLength(preallocatedSize);
+            } catch (IOException e) {
+                logger.debug("Failed to preallocate a file of {} bytes.", preallocatedSize, e);
+            }
+        }
+    }
+
+    private void closeWriteBehind() {
+        if (writeBehind != null) {
+            writeBehind.close();
+            writeBehind = null;
+        }
+    }
+
     @Override
     public void setContent(File file) throws IOException {
         checkAccessible();
         long size = file.length();
         checkSize(size);
         this.size = size;
+        releaseSpool();
         if (this.file != null) {
             delete();
         }
@@ -224,15 +681,15 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
     public void setContent(InputStream inputStream) throws IOException {
         checkAccessible();
         ObjectUtil.checkNotNullWithIAE(inputStream, "inputStream");
+        releaseSpool();
         if (file != null) {
             delete();
         }
         file = tempFile();
-        RandomAccessFile accessFile = new RandomAccessFile(file, "rw");
+        FileChannel localfileChannel = new RandomAccessFile(file, "rw").getChannel();
         int written = 0;
         try {
-            accessFile.setLength(0);
-            FileChannel localfileChannel = accessFile.getChannel();
+            localfileChannel.truncate(0);
             byte[] bytes = new byte[4096 * 4];
             ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
             int read = inputStream.read(bytes);
@@ -242,30 +699,63 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
                 checkSize(written);
                 read = inputStream.read(bytes);
             }
-            localfileChannel.force(false);
-        } finally {
-            accessFile.close();
+        } catch (IOException | RuntimeException e) {
+            localfileChannel.close();
+            throw e;
         }
         size = written;
         if (definedSize > 0 && definedSize < size) {
+            localfileChannel.close();
             if (!file.delete()) {
                 logger.warn("Failed to delete: {}", file);
             }
             file = null;
             throw new IOException("Out of size: " + size + " > " + definedSize);
         }
-        isRenamed = true;
+        commit(localfileChannel);
+        if (destination == null) {
+            isRenamed = true;
+        }
         setCompleted();
     }
 
     @Override
     public void delete() {
+        chunkWindow = null;
+        releaseSpool();
+        Future<Void> completion = completionFuture();
+        Future<Void> writes = null;
+        if (completion != null && isCompleted() && destination != null) {
+            if (!isRenamed) {
+                // the completed content is kept: it is still written or forced, then moved to its destination
+                final File partFile = file;
+                completion.addListener(future -> {
+                    if (future.isFailed()) {
+                        deleteFile(partFile);
+                    }
+                });
+                file = destination.toFile();
+                isRenamed = true;
+            }
+        } else if (writer != null) {
+            writes = writer.abort();
+            writer = null;
+        } else {
+            // the file stays open until forced
+            writes = commit;
+            commit = null;
+        }
         if (fileChannel != null) {
+            // the content is not forced, since the file is either deleted or already completed
             try {
-                fileChannel.force(false);
+                if (writeBehind != null && isRenamed) {
+                    // the file is kept, so its buffered content is written
+                    writeBehind.flush(fileChannel);
+                }
             } catch (IOException e) {
-                logger.warn("Failed to force.", e);
+                logger.warn("Failed to write.", e);
             } finally {
+                closeWriteBehind();
                 try {
                     fileChannel.close();
                 } catch (IOException e) {
@@ -275,31 +765,52 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
             fileChannel = null;
         }
         if (!isRenamed) {
-            String filePath = null;
-
-            if (file != null && file.exists()) {
-                filePath = file.getPath();
-                if (!file.delete()) {
-                    filePath = null;
-                    logger.warn("Failed to delete: {}", file);
+            final File file = this.file;
+            if (file != null) {
+                if (writes == null || writes.isDone()) {
+                    deleteFile(file);
+                } else {
+                    // the file is still written from the executor, or not yet forced
+                    writes.addListener(future -> deleteFile(file));
                 }
             }
+            this.file = null;
+        }
+    }
+
+    private void deleteFile(File file) {
+        String filePath = null;
 
-            // If you turn on deleteOnExit make sure it is executed.
-            if (deleteOnExit() && filePath != null) {
-                DeleteFileOnExitHook.remove(filePath);
+        if (file.exists()) {
+            filePath = file.getPath();
+            if (!file.delete()) {
+                filePath = null;
+                logger.warn("Failed to delete: {}", file);
             }
-            file = null;
+        }
+
+        // If you turn on deleteOnExit make sure it is executed.
+        if (deleteOnExit() && filePath != null) {
+            DeleteFileOnExitHook.remove(filePath);
         }
     }
 
     @Override
     public byte[] get() throws IOException {
         checkAccessible();
+        awaitWrites();
+        if (spool != null) {
+            byte[] array = new byte[checkLoadable(size)];
+            ByteBuffer destination = ByteBuffer.wrap(array);
+            while (destination.hasRemaining() && spool.read(destination, spoolOffset + destination.position()) > 0) {
+                // read all
+            }
+            return array;
+        }
         if (file == null) {
             return EmptyArrays.EMPTY_BYTES;
         }
-        return readFrom(file);
+        return readFrom(file, fileContentLength());
     }
 
     @Override
@@ -320,17 +831,32 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
     @Override
     public Buffer getChunk(int length) throws IOException {
         checkAccessible();
+        awaitWrites();
         int remaining = length;
         int read;
 
+        if (spool != null) {
+            int chunkLength = (int) Math.min(length, size - chunkPosition);
+            if (chunkLength <= 0) {
+                return DefaultBufferAllocators.preferredAllocator().allocate(0);
+            }
+            Buffer chunk = readSpool(chunkPosition, chunkLength);
+            chunkPosition += chunkLength;
+            return chunk;
+        }
         if (file == null || length == 0) {
             return DefaultBufferAllocators.preferredAllocator().allocate(0);
         }
+        if (mappedReads && isCompleted()) {
+            return getMappedChunk(length);
+        }
         if (fileChannel == null) {
             RandomAccessFile accessFile = new RandomAccessFile(file, "r");
             fileChannel = accessFile.getChannel();
         }
-        Buffer buffer = DefaultBufferAllocators.onHeapAllocator().allocate(length);
+        // the file may be longer than the written content while it is preallocated
+        remaining = (int) Math.min(length, Math.max(0, size - fileChannel.position()));
+        Buffer buffer = DefaultBufferAllocators.onHeapAllocator().allocate(remaining);
         try {
             do {
                 if ((read = buffer.transferFrom(fileChannel, remaining)) < 0) {
@@ -347,6 +873,127 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
         return buffer;
     }
 
+    /**
+     * @return the next chunk as a read-only view of a sliding mapped window of the file
+     */
+    private Buffer getMappedChunk(int length) throws IOException {
+        long fileLength = Math.min(file.length(), size);
+        int chunkLength = (int) Math.min(length, fileLength - chunkPosition);
+        if (chunkLength <= 0) {
+            return DefaultBufferAllocators.preferredAllocator().allocate(0);
+        }
+        if (chunkWindow == null || chunkPosition + chunkLength > chunkWindowPosition + chunkWindow.capacity()) {
+            chunkWindowPosition = chunkPosition;
+            chunkWindow = (MappedByteBuffer) map(chunkPosition,
+                    (int) Math.min(Math.max(chunkLength, MAPPED_WINDOW_SIZE), fileLength - chunkPosition));
+        }
+        ByteBuffer chunk = chunkWindow.duplicate();
+        chunk.position((int) (chunkPosition - chunkWindowPosition)).limit(chunk.position() + chunkLength);
+        chunkPosition += chunkLength;
+        return Helpers.wrapReadOnly(chunk);
+    }
+
+    @Override
+    public InputStream openInputStream() throws IOException {
+        checkAccessible();
+        awaitWrites();
+        if (spool != null) {
+            return Channels.newInputStream(spool.openChannel(spoolOffset, size));
+        }
+        if (file == null) {
+            return InputStream.nullInputStream();
+        }
+        return Channels.newInputStream(openFileChannel());
+    }
+
+    @Override
+    public ReadableByteChannel openChannel() throws IOException {
+        checkAccessible();
+        awaitWrites();
+        if (spool != null) {
+            return spool.openChannel(spoolOffset, size);
+        }
+        if (file == null) {
+            return Channels.newChannel(InputStream.nullInputStream());
+        }
+        return openFileChannel();
+    }
+
+    /**
+     * @return a new channel reading the file, or only its written content while it is preallocated
+     */
+    private ReadableByteChannel openFileChannel() throws IOException {
+        // each reader has its own channel, and so its own position
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        return isCompleted() ? channel : new BoundedChannel(channel, size);
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position, long count) throws IOException {
+        Objects.requireNonNull(target, "target");
+        ObjectUtil.checkPositiveOrZero(position, "position");
+        ObjectUtil.checkPositiveOrZero(count, "count");
+        checkAccessible();
+        awaitWrites();
+        if (spool != null) {
+            count = Math.min(count, Math.max(0, size - position));
+            long transferred = 0;
+            while (transferred < count) {
+                long written = spool.transferTo(spoolOffset + position + transferred, count - transferred, target);
+                if (written <= 0) {
+                    // non-blocking target full
+                    break;
+                }
+                transferred += written;
+            }
+            return transferred;
+        }
+        if (file == null) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            count = Math.min(count, Math.max(0, Math.min(channel.size(), size) - position));
+            long transferred = 0;
+            while (transferred < count) {
+                long written = channel.transferTo(position + transferred, count - transferred, target);
+                if (written <= 0) {
+                    // non-blocking target full
+                    break;
+                }
+                transferred += written;
+            }
+            return transferred;
+        }
+    }
+
+    /**
+     * Returns a {@link FileRegion} of the file, to write the content to a {@link io.netty5.channel.Channel}
+     * with zero-copy transfers. The file is opened when the region is first transferred, and closed once the
+     * region is released, which is the responsibility of the caller (usually the channel writing it).
+     *
+     * @param position the position in the file of the first byte of the region
+     * @param count the number of bytes of the region
+     * @return a new region of the file
+     * @throws IOException if the file is not available
+     */
+    public FileRegion toFileRegion(long position, long count) throws IOException {
+        ObjectUtil.checkPositiveOrZero(position, "position");
+        ObjectUtil.checkPositiveOrZero(count, "count");
+        checkAccessible();
+        awaitWrites();
+        // the region is bounded by the written content
+        count = Math.min(count, Math.max(0, size - position));
+        if (spool != null && spool.file() != null) {
+            // the region has its own channel, so it stays readable once the spool file is deleted
+            FileChannel channel = FileChannel.open(spool.file().toPath(), StandardOpenOption.READ);
+            return new DefaultFileRegion(channel, spoolOffset + position, count);
+        }
+        if (file == null) {
+            throw new IOException("No file defined so cannot be transferred");
+        }
+        return new DefaultFileRegion(file, position, count);
+    }
+
     @Override
     public String getString() throws IOException {
         return getString(HttpConstants.DEFAULT_CHARSET);
@@ -355,14 +1002,26 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
     @Override
     public String getString(Charset encoding) throws IOException {
         checkAccessible();
+        awaitWrites();
+        if (spool != null) {
+            return new String(get(), encoding == null ? HttpConstants.DEFAULT_CHARSET : encoding);
+        }
         if (file == null) {
             return "";
         }
+        if (mappedReads && isCompleted()) {
+            long length = file.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File too big to be loaded in memory");
+            }
+            ByteBuffer content = map(0, (int) length);
+            return (encoding == null ? HttpConstants.DEFAULT_CHARSET : encoding).decode(content).toString();
+        }
         if (encoding == null) {
-            byte[] array = readFrom(file);
+            byte[] array = readFrom(file, fileContentLength());
             return new String(array, HttpConstants.DEFAULT_CHARSET.name());
         }
-        byte[] array = readFrom(file);
+        byte[] array = readFrom(file, fileContentLength());
         return new String(array, encoding.name());
     }
 
@@ -375,15 +1034,25 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
     public boolean renameTo(File dest) throws IOException {
         checkAccessible();
         ObjectUtil.checkNotNullWithIAE(dest, "dest");
+        if (spool != null) {
+            if (!copySpoolTo(dest)) {
+                return false;
+            }
+            releaseSpool();
+            file = dest;
+            isRenamed = true;
+            durabilityPolicy.renamed(dest);
+            return true;
+        }
         if (file == null) {
             throw new IOException("No file defined so cannot be renamed");
         }
+        awaitWrites();
         if (!file.renameTo(dest)) {
             // must copy
             IOException exception = null;
             RandomAccessFile inputAccessFile = null;
             RandomAccessFile outputAccessFile = null;
-            long chunkSize = 8196;
             long position = 0;
             try {
                 inputAccessFile = new RandomAccessFile(file, "r");
@@ -391,10 +1060,12 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
                 FileChannel in = inputAccessFile.getChannel();
                 FileChannel out = outputAccessFile.getChannel();
                 while (position < size) {
-                    if (chunkSize < size - position) {
-                        chunkSize = size - position;
+                    long transferred = in.transferTo(position, Math.min(COPY_CHUNK_SIZE, size - position), out);
+                    if (transferred <= 0) {
+                        // the file is shorter than expected
+                        break;
                     }
-                    position += in.transferTo(position, chunkSize, out);
+                    position += transferred;
                 }
             } catch (IOException e) {
                 exception = e;
@@ -431,6 +1102,7 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
                 }
                 file = dest;
                 isRenamed = true;
+                durabilityPolicy.renamed(dest);
                 return true;
             } else {
                 if (!dest.delete()) {
@@ -441,6 +1113,7 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
         }
         file = dest;
         isRenamed = true;
+        durabilityPolicy.renamed(dest);
         return true;
     }
 
@@ -449,24 +1122,50 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
      *
      * @return the array of bytes
      */
-    private static byte[] readFrom(File src) throws IOException {
-        return Files.readAllBytes(src.toPath());
+    private static byte[] readFrom(File src, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("File too big to be loaded in memory");
+        }
+        try (InputStream inputStream = Files.newInputStream(src.toPath())) {
+            return inputStream.readNBytes((int) length);
+        }
+    }
+
+    /**
+     * @return the length of the content written to the file, which is shorter than the file while it is
+     * preallocated
+     */
+    private long fileContentLength() {
+        long length = file.length();
+        return isCompleted() ? length : Math.min(length, size);
     }
 
     /**
-     * Returns a copy of the current file content. The buffer ownership is returned to the caller
+     * Returns a copy of the current file content, or a read-only view of the mapped file in mapped reads mode.
+     * The buffer ownership is returned to the caller
      */
     protected Buffer getContent() {
         try {
-            return (file == null) ? DefaultBufferAllocators.preferredAllocator().allocate(0) : getBufferFrom(file);
+            awaitWrites();
+            if (spool != null) {
+                return readSpool(0, checkLoadable(size));
+            }
+            if (file != null && mappedReads && isCompleted()) {
+                long length = file.length();
+                if (length > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("File too big to be loaded in memory");
+                }
+                return Helpers.wrapReadOnly(map(0, (int) length));
+            }
+            return (file == null) ? DefaultBufferAllocators.preferredAllocator().allocate(0)
+                    : getBufferFrom(file, fileContentLength());
         }
         catch (IOException e) {
             throw new ChannelException(e);
         }
     }
 
-    private static Buffer getBufferFrom(File src) throws IOException {
-        long srcsize = src.length();
+    private static Buffer getBufferFrom(File src, long srcsize) throws IOException {
         if (srcsize > Integer.MAX_VALUE) {
             throw new IllegalArgumentException(
                     "File too big to be loaded in memory");
@@ -494,6 +1193,69 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
 
     @Override
     public File getFile() throws IOException {
+        if (spool != null && !isCompleted()) {
+            throw new IOException("The content is spooled and not completed yet");
+        }
+        if (spool != null) {
+            // the content needs a file of its own
+            File copy = tempFile();
+            if (!copySpoolTo(copy)) {
+                throw new IOException("Failed to copy the content to " + copy);
+            }
+            releaseSpool();
+            file = copy;
+        }
+        if (isCompleted()) {
+            awaitWrites();
+        }
         return file;
     }
+
+    /**
+     * @return the file of the content, or the spool file containing it, without waiting for the writes
+     */
+    File currentFile() {
+        return spool != null ? spool.file() : file;
+    }
+
+    /**
+     * Channel reading a file up to the given length, the rest of the file being preallocated but not written yet
+     */
+    private static final class BoundedChannel implements ReadableByteChannel {
+        private final FileChannel channel;
+        private final long length;
+
+        BoundedChannel(FileChannel channel, long length) {
+            this.channel = channel;
+            this.length = length;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            long remaining = length - channel.position();
+            if (remaining <= 0) {
+                return -1;
+            }
+            if (destination.remaining() <= remaining) {
+                return channel.read(destination);
+            }
+            ByteBuffer limited = destination.duplicate();
+            limited.limit(limited.position() + (int) remaining);
+            int read = channel.read(limited);
+            if (read > 0) {
+                destination.position(limited.position());
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
 }
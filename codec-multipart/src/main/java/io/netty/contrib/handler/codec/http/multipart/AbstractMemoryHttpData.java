@@ -27,9 +27,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Abstract Memory HttpData implementation
@@ -134,8 +138,10 @@ public abstract class AbstractMemoryHttpData extends AbstractHttpData {
                 byteBuf = buffer;
             } else if (CompositeBuffer.isComposite(this.byteBuf)) {
                 CompositeBuffer cbb = (CompositeBuffer) this.byteBuf;
+                Helpers.sameReadOnly(cbb, buffer);
                 cbb.extendWith(buffer.send());
             } else {
+                Helpers.sameReadOnly(byteBuf, buffer);
                 byteBuf = DefaultBufferAllocators.onHeapAllocator().compose(Arrays.asList(this.byteBuf.send(), buffer.send()));
             }
         }
@@ -234,6 +240,55 @@ public abstract class AbstractMemoryHttpData extends AbstractHttpData {
         return byteBuf.readSplit(Math.min(readableBytes, length));
     }
 
+    @Override
+    public InputStream openInputStream() {
+        return new BufferContentReader(byteBuf);
+    }
+
+    @Override
+    public ReadableByteChannel openChannel() {
+        return new BufferContentReader(byteBuf);
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position, long count) throws IOException {
+        Objects.requireNonNull(target, "target");
+        ObjectUtil.checkPositiveOrZero(position, "position");
+        ObjectUtil.checkPositiveOrZero(count, "count");
+        if (byteBuf == null || position >= byteBuf.readableBytes()) {
+            return 0;
+        }
+        long skip = position;
+        long remaining = Math.min(count, byteBuf.readableBytes() - position);
+        long transferred = 0;
+        // write the components directly, without moving the reader offset
+        try (var iterator = byteBuf.forEachComponent()) {
+            for (var component = iterator.firstReadable(); component != null && remaining > 0;
+                 component = component.nextReadable()) {
+                ByteBuffer buffer = component.readableBuffer();
+                if (skip >= buffer.remaining()) {
+                    skip -= buffer.remaining();
+                    continue;
+                }
+                buffer.position(buffer.position() + (int) skip);
+                skip = 0;
+                if (buffer.remaining() > remaining) {
+                    buffer.limit(buffer.position() + (int) remaining);
+                }
+                while (buffer.hasRemaining()) {
+                    int written = target.write(buffer);
+                    if (written <= 0) {
+                        // non-blocking target full
+                        return transferred;
+                    }
+                    transferred += written;
+                    remaining -= written;
+                }
+            }
+        }
+        return transferred;
+    }
+
     @Override
     public boolean isInMemory() {
         return true;
@@ -18,17 +18,32 @@ package io.netty.contrib.handler.codec.http.multipart;
 import io.netty5.buffer.Buffer;
 import io.netty5.buffer.Drop;
 import io.netty5.buffer.internal.ResourceSupport;
+import io.netty5.util.concurrent.Future;
 import io.netty.contrib.handler.codec.http.multipart.Helpers.ThrowingConsumer;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
 
 abstract class AbstractMixedHttpData<D extends HttpData> extends ResourceSupport<HttpData, AbstractMixedHttpData<? extends HttpData>> implements HttpData {
     final String baseDir;
     final boolean deleteOnExit;
     D wrapped;
+    private Executor writeExecutor;
+    private long maxPendingWriteBytes;
+    private int writeBufferSize;
+    private DurabilityPolicy durabilityPolicy;
+    private boolean mappedReads;
+    private MemoryBudget memoryBudget;
+    /**
+     * Bytes reserved in the memory budget for the content in memory
+     */
+    private long reserved;
+    private SpoolFile spool;
 
     protected final long limitSize;
 
@@ -58,6 +73,123 @@ abstract class AbstractMixedHttpData<D extends HttpData> extends ResourceSupport
 
     abstract D makeDiskData();
 
+    /**
+     * Write the content from the given executor once stored on disk, see
+     * {@link AbstractDiskHttpData#setWriteExecutor(Executor, long)}.
+     */
+    public void setWriteExecutor(Executor executor, long maxPendingBytes) {
+        checkAccessible();
+        if (wrapped instanceof AbstractDiskHttpData) {
+            ((AbstractDiskHttpData) wrapped).setWriteExecutor(executor, maxPendingBytes);
+        }
+        writeExecutor = executor;
+        maxPendingWriteBytes = maxPendingBytes;
+    }
+
+    /**
+     * Coalesce the content in a write-behind buffer once stored on disk, see
+     * {@link AbstractDiskHttpData#setWriteBufferSize(int)}.
+     */
+    public void setWriteBufferSize(int writeBufferSize) {
+        checkAccessible();
+        if (wrapped instanceof AbstractDiskHttpData) {
+            ((AbstractDiskHttpData) wrapped).setWriteBufferSize(writeBufferSize);
+        }
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    /**
+     * Set when the content is forced to the storage device once stored on disk, see
+     * {@link AbstractDiskHttpData#setDurabilityPolicy(DurabilityPolicy)}.
+     */
+    public void setDurabilityPolicy(DurabilityPolicy durabilityPolicy) {
+        checkAccessible();
+        if (wrapped instanceof AbstractDiskHttpData) {
+            ((AbstractDiskHttpData) wrapped).setDurabilityPolicy(durabilityPolicy);
+        }
+        this.durabilityPolicy = durabilityPolicy;
+    }
+
+    /**
+     * Read the content by mapping the file once stored on disk, see
+     * {@link AbstractDiskHttpData#setMappedReads(boolean)}.
+     */
+    public void setMappedReads(boolean mappedReads) {
+        checkAccessible();
+        if (wrapped instanceof AbstractDiskHttpData) {
+            ((AbstractDiskHttpData) wrapped).setMappedReads(mappedReads);
+        }
+        this.mappedReads = mappedReads;
+    }
+
+    /**
+     * Keep the content in memory only while the given budget shared with other data is not exhausted, so that
+     * the content is stored on disk before reaching the limit size when the memory used by all the data reaches
+     * the high watermark of the budget.
+     *
+     * @param memoryBudget the shared budget, or {@code null} to only use the limit size
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        checkAccessible();
+        if (wrapped.length() > 0) {
+            throw new IllegalStateException("Content already added");
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Store the content in the given spool file of the request once moved to disk, see
+     * {@link AbstractDiskHttpData#spoolTo(SpoolFile)}.
+     */
+    void spoolTo(SpoolFile spool) {
+        checkAccessible();
+        if (wrapped instanceof AbstractDiskHttpData) {
+            ((AbstractDiskHttpData) wrapped).spoolTo(spool);
+        }
+        this.spool = spool;
+    }
+
+    /**
+     * @return {@code true} if the given bytes can be kept in memory according to the memory budget
+     */
+    private boolean reserveMemory(long bytes) {
+        if (memoryBudget == null) {
+            return true;
+        }
+        if (!memoryBudget.tryReserve(bytes)) {
+            return false;
+        }
+        reserved += bytes;
+        return true;
+    }
+
+    private void releaseMemory() {
+        if (reserved > 0) {
+            memoryBudget.release(reserved);
+            reserved = 0;
+        }
+    }
+
+    private D newDiskData() {
+        D diskData = makeDiskData();
+        if (writeExecutor != null) {
+            ((AbstractDiskHttpData) diskData).setWriteExecutor(writeExecutor, maxPendingWriteBytes);
+        }
+        if (writeBufferSize > 0) {
+            ((AbstractDiskHttpData) diskData).setWriteBufferSize(writeBufferSize);
+        }
+        if (durabilityPolicy != null) {
+            ((AbstractDiskHttpData) diskData).setDurabilityPolicy(durabilityPolicy);
+        }
+        if (mappedReads) {
+            ((AbstractDiskHttpData) diskData).setMappedReads(true);
+        }
+        if (spool != null) {
+            ((AbstractDiskHttpData) diskData).spoolTo(spool);
+        }
+        return diskData;
+    }
+
     @Override
     public long getMaxSize() {
         return wrapped.getMaxSize();
@@ -101,8 +233,10 @@ abstract class AbstractMixedHttpData<D extends HttpData> extends ResourceSupport
         if (wrapped instanceof AbstractMemoryHttpData) {
             try {
                 checkSize(wrapped.length() + buffer.readableBytes());
-                if (wrapped.length() + buffer.readableBytes() > limitSize) {
-                    D diskData = makeDiskData();
+                if (wrapped.length() + buffer.readableBytes() > limitSize ||
+                    !reserveMemory(buffer.readableBytes())) {
+                    releaseMemory();
+                    D diskData = newDiskData();
                     // Because the diskData.addContent method throws an exception, use
                     // the Helpers.ThrowingConsumer.unchecked helper which allows
                     // to wrap a throwing consumer into a regular consumer
@@ -124,6 +258,7 @@ abstract class AbstractMixedHttpData<D extends HttpData> extends ResourceSupport
 
     @Override
     public void delete() {
+        releaseMemory();
         wrapped.delete();
     }
 
@@ -176,12 +311,14 @@ abstract class AbstractMixedHttpData<D extends HttpData> extends ResourceSupport
             buffer.close();
             throw e;
         }
-        if (buffer.readableBytes() > limitSize) {
-            if (wrapped instanceof AbstractMemoryHttpData) {
+        if (wrapped instanceof AbstractMemoryHttpData) {
+            // the content is replaced
+            releaseMemory();
+            if (buffer.readableBytes() > limitSize || !reserveMemory(buffer.readableBytes())) {
                 // change to Disk
                 D oldWrapped = wrapped;
                 try (oldWrapped) {
-                    wrapped = makeDiskData();
+                    wrapped = newDiskData();
                 }
             }
         }
@@ -192,12 +329,14 @@ abstract class AbstractMixedHttpData<D extends HttpData> extends ResourceSupport
     public void setContent(File file) throws IOException {
         checkAccessible();
         checkSize(file.length());
-        if (file.length() > limitSize) {
-            if (wrapped instanceof AbstractMemoryHttpData) {
+        if (wrapped instanceof AbstractMemoryHttpData) {
+            // the content is replaced
+            releaseMemory();
+            if (file.length() > limitSize || !reserveMemory(file.length())) {
                 // change to Disk
                 D oldWrapped = wrapped;
                 try (oldWrapped) {
-                    wrapped = makeDiskData();
+                    wrapped = newDiskData();
                 }
             }
         }
@@ -209,9 +348,10 @@ abstract class AbstractMixedHttpData<D extends HttpData> extends ResourceSupport
         checkAccessible();
         if (wrapped instanceof AbstractMemoryHttpData) {
             // change to Disk even if we don't know the size
+            releaseMemory();
             D oldWrapped = wrapped;
             try(oldWrapped) {
-                wrapped = makeDiskData();
+                wrapped = newDiskData();
             }
         }
         wrapped.setContent(inputStream);
@@ -222,6 +362,21 @@ abstract class AbstractMixedHttpData<D extends HttpData> extends ResourceSupport
         return wrapped.isCompleted();
     }
 
+    @Override
+    public Future<Void> writeFuture() {
+        return wrapped.writeFuture();
+    }
+
+    @Override
+    public boolean isWritable() {
+        return wrapped.isWritable();
+    }
+
+    @Override
+    public Future<Void> writableFuture() {
+        return wrapped.writableFuture();
+    }
+
     @Override
     public HttpDataType getHttpDataType() {
         return wrapped.getHttpDataType();
@@ -257,6 +412,21 @@ abstract class AbstractMixedHttpData<D extends HttpData> extends ResourceSupport
         return wrapped.getFile();
     }
 
+    @Override
+    public InputStream openInputStream() throws IOException {
+        return wrapped.openInputStream();
+    }
+
+    @Override
+    public ReadableByteChannel openChannel() throws IOException {
+        return wrapped.openChannel();
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position, long count) throws IOException {
+        return wrapped.transferTo(target, position, count);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public D copy() {
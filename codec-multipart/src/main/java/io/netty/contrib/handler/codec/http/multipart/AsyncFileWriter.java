@@ -0,0 +1,319 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.ImmediateEventExecutor;
+import io.netty5.util.concurrent.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writer of the content of an {@link AbstractDiskHttpData} to its file from an {@link Executor}, so that the thread
+ * adding the content (usually the event loop) never waits for the disk.
+ * <p>
+ * The buffers are written in order by at most one task at a time. The number of bytes queued but not yet written
+ * is tracked so that the producer can stop reading while it is above the given limit, until
+ * {@link #writableFuture()} is completed.
+ */
+final class AsyncFileWriter implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncFileWriter.class);
+
+    private final Executor executor;
+    private final long maxPendingBytes;
+    private final File file;
+    private final long preallocatedSize;
+    private final Path destination;
+    private final WriteBehindBuffer writeBehind;
+    private final DurabilityPolicy durabilityPolicy;
+
+    private final Queue<Buffer> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Promise<Void> completion = ImmediateEventExecutor.INSTANCE.newPromise();
+
+    /**
+     * Promise completed once the pending bytes are below the limit, guarded by this
+     */
+    private Promise<Void> writable;
+
+    private volatile boolean closing;
+    private volatile boolean aborted;
+    private volatile IOException failure;
+
+    /**
+     * Only accessed by the writing task
+     */
+    private FileChannel fileChannel;
+
+    /**
+     * @param writeBufferSize the size of the {@link WriteBehindBuffer} used by the writing task, or {@code 0}
+     *                        to write each buffer
+     * @param durabilityPolicy the policy given the channel once the whole content is written
+     * @param preallocatedSize the expected size of the file, set when the file is opened, or {@code 0} if unknown
+     * @param destination the file to which the completed file is moved, or {@code null} to keep it
+     */
+    AsyncFileWriter(Executor executor, long maxPendingBytes, int writeBufferSize,
+                    DurabilityPolicy durabilityPolicy, File file, long preallocatedSize, Path destination) {
+        this.executor = executor;
+        this.maxPendingBytes = maxPendingBytes;
+        this.durabilityPolicy = durabilityPolicy;
+        this.file = file;
+        this.preallocatedSize = preallocatedSize;
+        this.destination = destination;
+        writeBehind = writeBufferSize > 0 ? new WriteBehindBuffer(writeBufferSize) : null;
+    }
+
+    /**
+     * Queue the buffer to be written at the end of the file.
+     *
+     * @param buffer the buffer, whose ownership is transferred to this writer
+     * @throws IOException if a previous write failed
+     */
+    void write(Buffer buffer) throws IOException {
+        IOException failure = this.failure;
+        if (failure != null || closing || aborted) {
+            buffer.close();
+            throw failure != null ? new IOException(failure) : new IOException("Writer already closed");
+        }
+        pendingBytes.addAndGet(buffer.readableBytes());
+        queue.add(buffer);
+        schedule();
+    }
+
+    /**
+     * No more buffer will be written: the file is given to the {@link DurabilityPolicy} once all the queued
+     * buffers are written, then moved to its destination if any once forced.
+     */
+    void close() throws IOException {
+        IOException failure = this.failure;
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+        closing = true;
+        schedule();
+    }
+
+    /**
+     * Discard the buffers not yet written and close the file.
+     *
+     * @return the future completed once the file is closed, failed with a {@link ClosedChannelException} unless
+     *         the whole content was already written
+     */
+    Future<Void> abort() {
+        aborted = true;
+        try {
+            schedule();
+        } catch (IOException e) {
+            logger.warn("Failed to abort the writes to {}", file, e);
+        }
+        return completion.asFuture();
+    }
+
+    /**
+     * @return {@code true} if the bytes queued but not yet written are below the limit
+     */
+    boolean isWritable() {
+        return pendingBytes.get() < maxPendingBytes;
+    }
+
+    /**
+     * @return the future completed once the bytes queued but not yet written are below the limit
+     */
+    Future<Void> writableFuture() {
+        synchronized (this) {
+            if (isWritable() || completion.isDone()) {
+                return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+            }
+            if (writable == null) {
+                writable = ImmediateEventExecutor.INSTANCE.newPromise();
+            }
+            return writable.asFuture();
+        }
+    }
+
+    /**
+     * @return the future completed once all the buffers are written, and the file is forced by the
+     *         {@link DurabilityPolicy}, closed and moved to its destination if any
+     */
+    Future<Void> completionFuture() {
+        return completion.asFuture();
+    }
+
+    private void schedule() throws IOException {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw new IOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        for (;;) {
+            Buffer polled;
+            while ((polled = queue.poll()) != null) {
+                int length = polled.readableBytes();
+                try (Buffer buffer = polled) {
+                    if (failure == null && !aborted) {
+                        writeFully(buffer);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    release(length);
+                }
+            }
+            if (aborted || closing && queue.isEmpty()) {
+                finish();
+                return;
+            }
+            scheduled.set(false);
+            // A buffer may have been queued after the last poll but before scheduled was reset
+            if (queue.isEmpty() && !closing && !aborted || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void writeFully(Buffer buffer) throws IOException {
+        if (fileChannel == null) {
+            RandomAccessFile accessFile = new RandomAccessFile(file, "rw");
+            AbstractDiskHttpData.preallocate(accessFile, preallocatedSize);
+            fileChannel = accessFile.getChannel();
+        }
+        if (writeBehind != null) {
+            writeBehind.write(fileChannel, buffer);
+            return;
+        }
+        int remaining = buffer.readableBytes();
+        int written;
+        while (remaining > 0) {
+            if ((written = buffer.transferTo(fileChannel, remaining)) == -1) {
+                break;
+            }
+            remaining -= written;
+        }
+    }
+
+    private void release(int length) {
+        long pending = pendingBytes.addAndGet(-length);
+        if (pending < maxPendingBytes && pending + length >= maxPendingBytes) {
+            notifyWritable();
+        }
+    }
+
+    private void notifyWritable() {
+        Promise<Void> writable;
+        synchronized (this) {
+            writable = this.writable;
+            this.writable = null;
+        }
+        if (writable != null) {
+            writable.setSuccess(null);
+        }
+    }
+
+    private void finish() {
+        Buffer buffer;
+        while ((buffer = queue.poll()) != null) {
+            int length = buffer.readableBytes();
+            buffer.close();
+            release(length);
+        }
+        if (fileChannel == null && failure == null && !aborted) {
+            // No content at all: still create the file
+            try {
+                fileChannel = new RandomAccessFile(file, "rw").getChannel();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        Future<Void> committed = null;
+        if (fileChannel != null) {
+            FileChannel channel = fileChannel;
+            fileChannel = null;
+            try {
+                if (failure == null && !aborted) {
+                    if (writeBehind != null) {
+                        writeBehind.flush(channel);
+                    }
+                    if (preallocatedSize > 0) {
+                        // the content may be shorter than the preallocated file
+                        channel.truncate(channel.position());
+                    }
+                    // the policy forces and closes the channel, then the file is moved
+                    committed = durabilityPolicy.completed(channel);
+                    channel = null;
+                    if (destination != null) {
+                        committed = AbstractDiskHttpData.moveOnceForced(committed, file, destination,
+                                                                        durabilityPolicy);
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        logger.warn("Failed to close a file.", e);
+                    }
+                }
+            }
+        }
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        notifyWritable();
+        IOException failure = this.failure;
+        if (failure == null && aborted) {
+            // the content is discarded, so it is not stored
+            failure = new ClosedChannelException();
+        }
+        if (failure != null) {
+            completion.tryFailure(failure);
+        } else if (committed != null) {
+            committed.addListener(future -> {
+                if (future.isFailed()) {
+                    completion.tryFailure(future.cause());
+                } else {
+                    completion.trySuccess(null);
+                }
+            });
+        } else {
+            completion.trySuccess(null);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.handler.codec.http.HttpConstants;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Precompiled multipart delimiter ({@code --boundary}) matcher.
+ * <p>
+ * The delimiter is encoded and its Horspool skip table is computed once, so that searching a {@link Buffer}
+ * only needs to inspect about {@code length / delimiter.length} bytes when the content does not look like
+ * the delimiter, instead of comparing every byte.
+ * <p>
+ * When searching the end of a part with {@link #findDelimiterLine(Buffer)}, the matcher also keeps how much of
+ * {@code LF--boundary} was matched at the end of the previous call, so that the search resumes where it stopped
+ * on the next chunk, instead of scanning again the tail of the previous one.
+ */
+final class BoundaryMatcher {
+
+    private final byte[] pattern;
+    private final int[] skipTable = new int[256];
+
+    /**
+     * The delimiter preceded by LF, and its KMP failure table
+     */
+    private final byte[] linePattern;
+    private final int[] failureTable;
+
+    /**
+     * Number of bytes of {@link #linePattern} matched at the end of the already scanned bytes
+     */
+    private int matchState;
+
+    /**
+     * Number of readable bytes already scanned (and so kept by the caller) from the reader offset
+     */
+    private int scannedBytes;
+
+    /**
+     * @param delimiter the delimiter, of the form --string, such that '--' is already included
+     * @param charset the charset used to encode the delimiter
+     */
+    BoundaryMatcher(String delimiter, Charset charset) {
+        pattern = delimiter.getBytes(charset);
+        final int last = pattern.length - 1;
+        Arrays.fill(skipTable, pattern.length);
+        for (int i = 0; i < last; i++) {
+            skipTable[pattern[i] & 0xFF] = last - i;
+        }
+        linePattern = new byte[pattern.length + 1];
+        linePattern[0] = HttpConstants.LF;
+        System.arraycopy(pattern, 0, linePattern, 1, pattern.length);
+        failureTable = new int[linePattern.length];
+        for (int i = 1; i < linePattern.length - 1; i++) {
+            int border = failureTable[i];
+            while (border > 0 && linePattern[i] != linePattern[border]) {
+                border = failureTable[border];
+            }
+            failureTable[i + 1] = linePattern[i] == linePattern[border] ? border + 1 : 0;
+        }
+        reset();
+    }
+
+    /**
+     * Reset the search state for the beginning of a new part: the line break ending the part headers
+     * is considered as already matched, so that an empty part content is followed directly by the delimiter.
+     */
+    void reset() {
+        matchState = 1;
+        scannedBytes = 0;
+    }
+
+    /**
+     * @return the length in bytes of the delimiter
+     */
+    int length() {
+        return pattern.length;
+    }
+
+    /**
+     * Find the first occurrence of the delimiter within the given range of the buffer.
+     *
+     * @param buffer the buffer to search in
+     * @param fromIndex the first index (inclusive) where the delimiter may start
+     * @param toIndex the last index (exclusive) where the delimiter may end
+     * @return the absolute index of the first byte of the delimiter, or -1 if not found
+     */
+    int indexOf(Buffer buffer, int fromIndex, int toIndex) {
+        final byte[] pattern = this.pattern;
+        final int last = pattern.length - 1;
+        final byte lastByte = pattern[last];
+        int position = fromIndex;
+        while (position <= toIndex - pattern.length) {
+            byte value = buffer.getByte(position + last);
+            if (value == lastByte) {
+                int i = last - 1;
+                while (i >= 0 && buffer.getByte(position + i) == pattern[i]) {
+                    i--;
+                }
+                if (i < 0) {
+                    return position;
+                }
+            }
+            position += skipTable[value & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * Find the delimiter preceded by LF or CRLF within the readable bytes of the buffer, resuming from the state
+     * left by the previous call, so that each byte is only inspected once whatever the chunk size.
+     * <p>
+     * If not found, the caller must consume all readable bytes but the last {@link #retainedBytes()} ones,
+     * which could be the beginning of the delimiter (including a CR possibly preceding its LF).
+     * If found, the state is reset for the next part.
+     *
+     * @param buffer the buffer to search in, from its reader offset
+     * @return a relative position from the reader offset designing the start of the delimiter (including LF or CRLF),
+     *         or -1 if the delimiter is not found
+     */
+    int findDelimiterLine(Buffer buffer) {
+        final int readerIndex = buffer.readerOffset();
+        final int writerIndex = buffer.writerOffset();
+        final int length = linePattern.length;
+        int position = readerIndex + scannedBytes;
+        int state = matchState;
+        boolean tail = false;
+        while (position < writerIndex) {
+            if (state == 0 && !tail) {
+                // Nothing pending, so jump to the next delimiter using the skip table
+                int found = indexOf(buffer, position + 1, writerIndex);
+                if (found < 0) {
+                    // Only the last bytes can be the beginning of a delimiter
+                    position = Math.max(position, writerIndex - length + 1);
+                    tail = true;
+                    continue;
+                }
+                if (buffer.getByte(found - 1) == HttpConstants.LF) {
+                    return delimiterStart(buffer, found - 1);
+                }
+                // Not preceded by a line break, so nothing can be pending up to its first byte
+                position = found + 1;
+                continue;
+            }
+            byte value = buffer.getByte(position++);
+            while (state > 0 && linePattern[state] != value) {
+                state = failureTable[state];
+            }
+            if (linePattern[state] == value && ++state == length) {
+                return delimiterStart(buffer, position - length);
+            }
+        }
+        matchState = state;
+        int keepFrom = Math.max(readerIndex, writerIndex - state);
+        if (keepFrom > readerIndex && buffer.getByte(keepFrom - 1) == HttpConstants.CR) {
+            // CR could precede the LF of the delimiter
+            keepFrom--;
+        }
+        scannedBytes = writerIndex - keepFrom;
+        return -1;
+    }
+
+    /**
+     * @return the number of bytes to keep, at the end of the buffer, after {@link #findDelimiterLine(Buffer)}
+     *         did not find the delimiter
+     */
+    int retainedBytes() {
+        return scannedBytes;
+    }
+
+    private int delimiterStart(Buffer buffer, int lineBreakIndex) {
+        final int readerIndex = buffer.readerOffset();
+        reset();
+        if (lineBreakIndex < readerIndex) {
+            // The line break is the one ending the part headers
+            return 0;
+        }
+        if (lineBreakIndex > readerIndex && buffer.getByte(lineBreakIndex - 1) == HttpConstants.CR) {
+            lineBreakIndex--;
+        }
+        return lineBreakIndex - readerIndex;
+    }
+
+    /**
+     * Try to find the delimiter, with LF or CRLF in front of it (added as delimiters) if needed
+     *
+     * @param buffer the buffer to search in
+     * @param index the index to start from in the buffer
+     * @param precededByLineBreak true if it must be preceded by LF or CRLF, else false
+     * @return a relative position from the reader offset > 0 if delimiter found designing the start of it
+     *         (including LF or CRLF is asked)
+     *         or a number < 0 if delimiter is not found
+     */
+    int findDelimiter(Buffer buffer, int index, boolean precededByLineBreak) {
+        final int readerIndex = buffer.readerOffset();
+        final int writerIndex = buffer.writerOffset();
+        int newOffset = index;
+        for (;;) {
+            newOffset = indexOf(buffer, newOffset, writerIndex);
+            if (newOffset < 0) {
+                return -1;
+            }
+            if (precededByLineBreak && newOffset > readerIndex) {
+                if (buffer.getByte(newOffset - 1) != HttpConstants.LF) {
+                    // Delimiter with Line Break could be further: iterate after first char of delimiter
+                    newOffset++;
+                    continue;
+                }
+                newOffset--;
+                // Check if CR before: not mandatory to be there
+                if (newOffset > readerIndex && buffer.getByte(newOffset - 1) == HttpConstants.CR) {
+                    newOffset--;
+                }
+            }
+            return newOffset - readerIndex;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.buffer.Buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reader of the readable bytes of a {@link Buffer}, as an {@link InputStream} or as a {@link ReadableByteChannel},
+ * with its own position so that many readers can read the same buffer concurrently.
+ * <p>
+ * The buffer is neither copied nor modified, and it is still owned by its {@link HttpData}.
+ */
+final class BufferContentReader extends InputStream implements ReadableByteChannel {
+
+    private final Buffer buffer;
+    private final int end;
+    private int position;
+    private int mark;
+    private boolean closed;
+
+    BufferContentReader(Buffer buffer) {
+        this.buffer = buffer;
+        position = buffer == null ? 0 : buffer.readerOffset();
+        end = buffer == null ? 0 : buffer.writerOffset();
+        mark = position;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkOpen();
+        if (position == end) {
+            return -1;
+        }
+        return buffer.getByte(position++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        checkOpen();
+        if (length == 0) {
+            return 0;
+        }
+        if (position == end) {
+            return -1;
+        }
+        int read = Math.min(length, end - position);
+        buffer.copyInto(position, bytes, offset, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+        checkOpen();
+        if (position == end) {
+            return -1;
+        }
+        int read = Math.min(destination.remaining(), end - position);
+        buffer.copyInto(position, destination, destination.position(), read);
+        destination.position(destination.position() + read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkOpen();
+        int skipped = (int) Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkOpen();
+        return end - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        mark = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+        position = mark;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -18,16 +18,17 @@ package io.netty.contrib.handler.codec.http.multipart;
 import io.netty5.handler.codec.http.DefaultHttpRequest;
 import io.netty5.handler.codec.http.HttpConstants;
 import io.netty5.handler.codec.http.HttpRequest;
+import io.netty5.handler.codec.http.HttpUtil;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.IdentityHashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 /**
  * Default factory giving {@link Attribute} and {@link FileUpload} according to constructor.
@@ -46,6 +47,9 @@ import java.util.Map.Entry;
  *   factory.cleanAllHttpData();
  *   decoder.destroy();
  *  }</pre>
+ * <p>When mixed, the storage is chosen up front when the size is known: a part whose Content-Length exceeds
+ * the minimum size is written to disk from the start, instead of being copied from memory to disk once the
+ * minimum size is reached, and the parts of a request whose Content-Length does not exceed it are kept in memory.</p>
  */
 public class DefaultHttpDataFactory implements HttpDataFactory {
 
@@ -72,15 +76,34 @@ public class DefaultHttpDataFactory implements HttpDataFactory {
 
     private boolean deleteOnExit; // false is a good default cause true leaks
 
+    private Executor writeExecutor;
+
+    private long maxPendingWriteBytes;
+
+    private int writeBufferSize;
+
+    private DurabilityPolicy durabilityPolicy;
+
+    private boolean mappedReads;
+
+    private UploadDestinationResolver destinationResolver;
+
+    private MemoryBudget memoryBudget;
+
+    private boolean spoolFiles;
+
+    private FieldNameCache fieldNameCache;
+
     /**
-     * Keep all {@link HttpData}s until cleaning methods are called.
-     * We need to use {@link IdentityHashMap} because different requests may be equal.
+     * Keep all {@link HttpData}s, and the spool file, of each request until cleaning methods are called.
+     * The requests are identified by their identity because different requests may be equal.
      * See {@link DefaultHttpRequest#hashCode} and {@link DefaultHttpRequest#equals}.
      * Similarly, when removing data items, we need to check their identities because
      * different data items may be equal.
+     * <p>
+     * A concurrent map, so that the event loops creating data for different requests do not contend on a lock.
      */
-    private final Map<HttpRequest, List<HttpData>> requestFileDeleteMap =
-            Collections.synchronizedMap(new IdentityHashMap<HttpRequest, List<HttpData>>());
+    private final ConcurrentMap<RequestKey, RequestData> requestDataMap = new ConcurrentHashMap<>();
 
     /**
      * HttpData will be in memory if less than default size (16KB).
@@ -143,37 +166,206 @@ public class DefaultHttpDataFactory implements HttpDataFactory {
         this.deleteOnExit = deleteOnExit;
     }
 
+    /**
+     * Write the content of the disk attributes and file uploads from the given executor, so that the event loop
+     * never waits for the disk. See {@link AbstractDiskHttpData#setWriteExecutor(Executor, long)}.
+     *
+     * @param executor the executor of the writes, for instance with a few platform threads or virtual threads,
+     *                 or {@code null} to write from the thread adding the content
+     * @param maxPendingBytes the maximum number of bytes per upload added but not yet written before
+     *                        {@link HttpData#isWritable()} returns {@code false}
+     */
+    public void setWriteExecutor(Executor executor, long maxPendingBytes) {
+        this.writeExecutor = executor;
+        this.maxPendingWriteBytes = maxPendingBytes;
+    }
+
+    /**
+     * Coalesce the content of the disk attributes and file uploads in a write-behind buffer per upload, so that
+     * small chunks are written with few large writes. See {@link AbstractDiskHttpData#setWriteBufferSize(int)}.
+     *
+     * @param writeBufferSize the size of the buffer, for instance between 64 KB and 256 KB, or {@code 0} to write
+     *                        each chunk as received
+     */
+    public void setWriteBufferSize(int writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    /**
+     * Set when the content of the disk attributes and file uploads is forced to the storage device, for instance
+     * {@link DurabilityPolicy#ON_RENAME} to only force the files which are kept, or
+     * {@link DurabilityPolicy#groupCommit} to group the flushes of concurrent uploads.
+     *
+     * @param durabilityPolicy the policy, {@link DurabilityPolicy#ALWAYS} by default
+     */
+    public void setDurabilityPolicy(DurabilityPolicy durabilityPolicy) {
+        this.durabilityPolicy = durabilityPolicy;
+    }
+
+    /**
+     * Read the content of the disk attributes and file uploads by mapping their file in memory instead of copying
+     * it on the heap. See {@link AbstractDiskHttpData#setMappedReads(boolean)}.
+     */
+    public void setMappedReads(boolean mappedReads) {
+        this.mappedReads = mappedReads;
+    }
+
+    /**
+     * Write the file uploads directly to the destination given by the resolver, instead of a temporary file to be
+     * renamed or copied by the application. The uploads with a destination are always stored on disk.
+     * See {@link AbstractDiskHttpData#setDestination(Path)}.
+     *
+     * @param destinationResolver the resolver, or {@code null} to store all the uploads as usual
+     */
+    public void setDestinationResolver(UploadDestinationResolver destinationResolver) {
+        this.destinationResolver = destinationResolver;
+    }
+
+    /**
+     * Share the given memory budget between all the mixed attributes and file uploads, so that they are stored
+     * on disk before reaching the minimum size once the memory used by all of them reaches the high watermark.
+     * See {@link AbstractMixedHttpData#setMemoryBudget(MemoryBudget)}.
+     *
+     * @param memoryBudget the budget, for instance shared by the factories of all the channels, or {@code null}
+     *                     to only use the minimum size
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Store the content of all the disk attributes and file uploads of a request, including the mixed ones once
+     * moved to disk, as extents of a single spool file instead of a temporary file per data. A request then
+     * creates and deletes one file whatever its number of parts, the spool file being deleted by
+     * {@link #cleanRequestHttpData(HttpRequest)} once no data removed from the clean list uses it anymore.
+     * <p>
+     * The content of a spooled data is written from the thread adding it, and is only copied to a file of its own
+     * when requested by {@link HttpData#getFile()} or {@link HttpData#renameTo(java.io.File)}.
+     */
+    public void setSpoolFiles(boolean spoolFiles) {
+        this.spoolFiles = spoolFiles;
+    }
+
+    /**
+     * Intern the names of the fields decoded by the decoders using this factory through the given cache, so that
+     * the same names sent by many requests give the same Strings instead of new ones per request.
+     *
+     * @param fieldNameCache the cache, for instance shared by the factories of all the channels, or {@code null}
+     *                       to create the names of each request
+     */
+    public void setFieldNameCache(FieldNameCache fieldNameCache) {
+        this.fieldNameCache = fieldNameCache;
+    }
+
+    @Override
+    public FieldNameCache getFieldNameCache() {
+        return fieldNameCache;
+    }
+
     @Override
     public void setMaxLimit(long maxSize) {
         this.maxSize = maxSize;
     }
 
     /**
-     * @return the associated list of {@link HttpData} for the request
+     * Keep the data until cleaning methods are called
+     */
+    private void addToClean(HttpRequest request, HttpData data) {
+        requestDataMap.compute(new RequestKey(request), (key, requestData) -> {
+            if (requestData == null) {
+                requestData = new RequestData();
+            }
+            requestData.data.add(data);
+            return requestData;
+        });
+    }
+
+    /**
+     * @return the spool file of the request, created if needed
+     */
+    private SpoolFile getSpoolFile(HttpRequest request) {
+        return requestDataMap.compute(new RequestKey(request), (key, requestData) -> {
+            if (requestData == null) {
+                requestData = new RequestData();
+            }
+            if (requestData.spool == null) {
+                requestData.spool = new SpoolFile(baseDir, deleteOnExit);
+            }
+            return requestData;
+        }).spool;
+    }
+
+    /**
+     * Utility method
      */
-    private List<HttpData> getList(HttpRequest request) {
-        List<HttpData> list = requestFileDeleteMap.get(request);
-        if (list == null) {
-            list = new ArrayList<HttpData>();
-            requestFileDeleteMap.put(request, list);
+    private <D extends HttpData> D configureStorage(HttpRequest request, D data) {
+        if (data instanceof AbstractDiskHttpData) {
+            AbstractDiskHttpData diskData = (AbstractDiskHttpData) data;
+            if (spoolFiles) {
+                diskData.spoolTo(getSpoolFile(request));
+            }
+            if (writeExecutor != null) {
+                diskData.setWriteExecutor(writeExecutor, maxPendingWriteBytes);
+            }
+            if (writeBufferSize > 0) {
+                diskData.setWriteBufferSize(writeBufferSize);
+            }
+            if (durabilityPolicy != null) {
+                diskData.setDurabilityPolicy(durabilityPolicy);
+            }
+            if (mappedReads) {
+                diskData.setMappedReads(true);
+            }
+        } else if (data instanceof AbstractMixedHttpData) {
+            AbstractMixedHttpData<?> mixedData = (AbstractMixedHttpData<?>) data;
+            if (writeExecutor != null) {
+                mixedData.setWriteExecutor(writeExecutor, maxPendingWriteBytes);
+            }
+            if (writeBufferSize > 0) {
+                mixedData.setWriteBufferSize(writeBufferSize);
+            }
+            if (durabilityPolicy != null) {
+                mixedData.setDurabilityPolicy(durabilityPolicy);
+            }
+            if (mappedReads) {
+                mixedData.setMappedReads(true);
+            }
+            if (memoryBudget != null) {
+                mixedData.setMemoryBudget(memoryBudget);
+            }
+            if (spoolFiles) {
+                mixedData.spoolTo(getSpoolFile(request));
+            }
         }
-        return list;
+        return data;
+    }
+
+    /**
+     * @return {@code true} if the whole body of the request is known to be small enough to be kept in memory,
+     * so that its data can be created in memory instead of mixed
+     */
+    private boolean fitsInMemory(HttpRequest request) {
+        if (memoryBudget != null) {
+            // the memory is only reserved by the mixed data
+            return false;
+        }
+        long contentLength = HttpUtil.getContentLength(request, -1L);
+        return contentLength >= 0 && contentLength <= minSize;
     }
 
     @Override
     public Attribute createAttribute(HttpRequest request, String name) {
         if (useDisk) {
-            Attribute attribute = new DiskAttribute(name, charset, baseDir, deleteOnExit);
+            Attribute attribute = configureStorage(request, new DiskAttribute(name, charset, baseDir, deleteOnExit));
             attribute.setMaxSize(maxSize);
-            List<HttpData> list = getList(request);
-            list.add(attribute);
+            addToClean(request, attribute);
             return attribute;
         }
         if (checkSize) {
-            Attribute attribute = new MixedAttribute(name, minSize, charset, baseDir, deleteOnExit);
+            Attribute attribute = fitsInMemory(request) ? new MemoryAttribute(name, charset)
+                    : configureStorage(request, new MixedAttribute(name, minSize, charset, baseDir, deleteOnExit));
             attribute.setMaxSize(maxSize);
-            List<HttpData> list = getList(request);
-            list.add(attribute);
+            addToClean(request, attribute);
             return attribute;
         }
         MemoryAttribute attribute = new MemoryAttribute(name);
@@ -184,17 +376,26 @@ public class DefaultHttpDataFactory implements HttpDataFactory {
     @Override
     public Attribute createAttribute(HttpRequest request, String name, long definedSize) {
         if (useDisk) {
-            Attribute attribute = new DiskAttribute(name, definedSize, charset, baseDir, deleteOnExit);
+            Attribute attribute = configureStorage(request,
+                    new DiskAttribute(name, definedSize, charset, baseDir, deleteOnExit));
             attribute.setMaxSize(maxSize);
-            List<HttpData> list = getList(request);
-            list.add(attribute);
+            addToClean(request, attribute);
             return attribute;
         }
         if (checkSize) {
-            Attribute attribute = new MixedAttribute(name, definedSize, minSize, charset, baseDir, deleteOnExit);
+            Attribute attribute;
+            if (definedSize > minSize) {
+                // known to be too large for the memory: written to disk from the start instead of spilled
+                attribute = configureStorage(request,
+                        new DiskAttribute(name, definedSize, charset, baseDir, deleteOnExit));
+            } else if (fitsInMemory(request)) {
+                attribute = new MemoryAttribute(name, definedSize, charset);
+            } else {
+                attribute = configureStorage(request,
+                        new MixedAttribute(name, definedSize, minSize, charset, baseDir, deleteOnExit));
+            }
             attribute.setMaxSize(maxSize);
-            List<HttpData> list = getList(request);
-            list.add(attribute);
+            addToClean(request, attribute);
             return attribute;
         }
         MemoryAttribute attribute = new MemoryAttribute(name, definedSize);
@@ -226,16 +427,14 @@ public class DefaultHttpDataFactory implements HttpDataFactory {
                 attribute.setMaxSize(maxSize);
             }
             checkHttpDataSize(attribute);
-            List<HttpData> list = getList(request);
-            list.add(attribute);
+            addToClean(request, attribute);
             return attribute;
         }
         if (checkSize) {
             Attribute attribute = new MixedAttribute(name, value, minSize, charset, baseDir, deleteOnExit);
             attribute.setMaxSize(maxSize);
             checkHttpDataSize(attribute);
-            List<HttpData> list = getList(request);
-            list.add(attribute);
+            addToClean(request, attribute);
             return attribute;
         }
         try {
@@ -252,22 +451,39 @@ public class DefaultHttpDataFactory implements HttpDataFactory {
     public FileUpload createFileUpload(HttpRequest request, String name, String filename,
             String contentType, String contentTransferEncoding, Charset charset,
             long size) {
+        Path destination = destinationResolver == null ? null : destinationResolver.resolve(request, name, filename);
+        if (destination != null) {
+            DiskFileUpload fileUpload = configureStorage(request, new DiskFileUpload(name, filename, contentType,
+                    contentTransferEncoding, charset, size, baseDir, deleteOnExit));
+            fileUpload.setDestination(destination);
+            fileUpload.setMaxSize(maxSize);
+            checkHttpDataSize(fileUpload);
+            addToClean(request, fileUpload);
+            return fileUpload;
+        }
         if (useDisk) {
-            FileUpload fileUpload = new DiskFileUpload(name, filename, contentType,
-                    contentTransferEncoding, charset, size, baseDir, deleteOnExit);
+            FileUpload fileUpload = configureStorage(request, new DiskFileUpload(name, filename, contentType,
+                    contentTransferEncoding, charset, size, baseDir, deleteOnExit));
             fileUpload.setMaxSize(maxSize);
             checkHttpDataSize(fileUpload);
-            List<HttpData> list = getList(request);
-            list.add(fileUpload);
+            addToClean(request, fileUpload);
             return fileUpload;
         }
         if (checkSize) {
-            FileUpload fileUpload = new MixedFileUpload(name, filename, contentType,
-                    contentTransferEncoding, charset, size, minSize, baseDir, deleteOnExit);
+            FileUpload fileUpload;
+            if (size > minSize) {
+                // known to be too large for the memory: written to disk from the start instead of spilled
+                fileUpload = configureStorage(request, new DiskFileUpload(name, filename, contentType,
+                        contentTransferEncoding, charset, size, baseDir, deleteOnExit));
+            } else if (fitsInMemory(request)) {
+                fileUpload = new MemoryFileUpload(name, filename, contentType, contentTransferEncoding, charset, size);
+            } else {
+                fileUpload = configureStorage(request, new MixedFileUpload(name, filename, contentType,
+                        contentTransferEncoding, charset, size, minSize, baseDir, deleteOnExit));
+            }
             fileUpload.setMaxSize(maxSize);
             checkHttpDataSize(fileUpload);
-            List<HttpData> list = getList(request);
-            list.add(fileUpload);
+            addToClean(request, fileUpload);
             return fileUpload;
         }
         MemoryFileUpload fileUpload = new MemoryFileUpload(name, filename, contentType,
@@ -283,60 +499,28 @@ public class DefaultHttpDataFactory implements HttpDataFactory {
             return;
         }
 
-        // Do not use getList because it adds empty list to requestFileDeleteMap
-        // if request is not found
-        List<HttpData> list = requestFileDeleteMap.get(request);
-        if (list == null) {
-            return;
-        }
-
-        // Can't simply call list.remove(data), because different data items may be equal.
-        // Need to check identity.
-        Iterator<HttpData> i = list.iterator();
-        while (i.hasNext()) {
-            HttpData n = i.next();
-            if (n == data) {
-                i.remove();
-
-                // Remove empty list to avoid memory leak
-                if (list.isEmpty()) {
-                    requestFileDeleteMap.remove(request);
-                }
-
-                return;
-            }
-        }
+        requestDataMap.computeIfPresent(new RequestKey(request), (key, requestData) -> {
+            requestData.data.remove(data);
+            // Remove empty entry to avoid memory leak
+            return requestData.data.isEmpty() && requestData.spool == null ? null : requestData;
+        });
     }
 
     @Override
     public void cleanRequestHttpData(HttpRequest request) {
-        List<HttpData> list = requestFileDeleteMap.remove(request);
-        if (list != null) {
-            for (HttpData data : list) {
-                if (data.isAccessible()) {
-                    data.close();
-                }
-            }
+        RequestData requestData = requestDataMap.remove(new RequestKey(request));
+        if (requestData != null) {
+            requestData.clean();
         }
     }
 
     @Override
     public void cleanAllHttpData() {
-        Iterator<Entry<HttpRequest, List<HttpData>>> i = requestFileDeleteMap.entrySet().iterator();
-        while (i.hasNext()) {
-            Entry<HttpRequest, List<HttpData>> e = i.next();
-
-            // Calling i.remove() here will cause "java.lang.IllegalStateException: Entry was removed"
-            // at e.getValue() below
-
-            List<HttpData> list = e.getValue();
-            for (HttpData data : list) {
-                if (data.isAccessible()) {
-                    data.close();
-                }
+        for (RequestKey key : requestDataMap.keySet()) {
+            RequestData requestData = requestDataMap.remove(key);
+            if (requestData != null) {
+                requestData.clean();
             }
-
-            i.remove();
         }
     }
 
@@ -349,4 +533,46 @@ public class DefaultHttpDataFactory implements HttpDataFactory {
     public void cleanAllHttpDatas() {
         cleanAllHttpData();
     }
+
+    /**
+     * Key of a request in the map, comparing the requests by identity
+     */
+    private static final class RequestKey {
+        private final HttpRequest request;
+        private final int hash;
+
+        RequestKey(HttpRequest request) {
+            this.request = request;
+            hash = System.identityHashCode(request);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RequestKey && ((RequestKey) o).request == request;
+        }
+    }
+
+    /**
+     * Data of a request, only modified while holding its entry of the map, or once removed from the map
+     */
+    private static final class RequestData {
+        final Set<HttpData> data = Collections.newSetFromMap(new IdentityHashMap<>());
+        SpoolFile spool;
+
+        void clean() {
+            for (HttpData httpData : data) {
+                if (httpData.isAccessible()) {
+                    httpData.close();
+                }
+            }
+            if (spool != null) {
+                spool.release();
+            }
+        }
+    }
 }
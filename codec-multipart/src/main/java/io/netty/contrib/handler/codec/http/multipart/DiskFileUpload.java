@@ -133,12 +133,7 @@ public class DiskFileUpload extends AbstractDiskHttpData implements FileUpload {
 
     @Override
     public String toString() {
-        File file = null;
-        try {
-            file = getFile();
-        } catch (IOException e) {
-            // Should not occur.
-        }
+        File file = currentFile();
 
         return HttpHeaderNames.CONTENT_DISPOSITION + ": " +
                HttpHeaderValues.FORM_DATA + "; " + HttpHeaderValues.NAME + "=\"" + getName() +
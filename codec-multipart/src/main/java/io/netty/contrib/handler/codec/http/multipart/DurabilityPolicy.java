@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.ImmediateEventExecutor;
+import io.netty5.util.internal.PlatformDependent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy deciding when the content of the files of the {@link AbstractDiskHttpData} is forced to the storage
+ * device, set with {@link DefaultHttpDataFactory#setDurabilityPolicy(DurabilityPolicy)}.
+ * <p>
+ * Forcing each completed file serializes the uploads on the flush latency of the disk, which is high on
+ * spinning and network-attached volumes, while the content of temporary files is often not worth it.
+ */
+public interface DurabilityPolicy {
+
+    /**
+     * Force each file once completed, before closing it. This is the default.
+     */
+    DurabilityPolicy ALWAYS = new DurabilityPolicy() {
+        @Override
+        public Future<Void> completed(FileChannel channel) throws IOException {
+            try {
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+
+        @Override
+        public String toString() {
+            return "DurabilityPolicy.ALWAYS";
+        }
+    };
+
+    /**
+     * Never force the files, leaving it to the operating system.
+     */
+    DurabilityPolicy NONE = new DurabilityPolicy() {
+        @Override
+        public Future<Void> completed(FileChannel channel) throws IOException {
+            channel.close();
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+
+        @Override
+        public String toString() {
+            return "DurabilityPolicy.NONE";
+        }
+    };
+
+    /**
+     * Only force the files kept with {@link HttpData#renameTo(File)} or moved to their
+     * {@linkplain AbstractDiskHttpData#setDestination destination}, temporary files are never forced.
+     * The directory of the destination is forced too, so that the rename itself survives a crash, except on
+     * Windows where a directory cannot be opened.
+     */
+    DurabilityPolicy ON_RENAME = new DurabilityPolicy() {
+        @Override
+        public Future<Void> completed(FileChannel channel) throws IOException {
+            channel.close();
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+
+        @Override
+        public void renamed(File dest) throws IOException {
+            try (RandomAccessFile accessFile = new RandomAccessFile(dest, "rw")) {
+                accessFile.getChannel().force(false);
+            }
+            File directory = dest.getAbsoluteFile().getParentFile();
+            if (directory != null && !PlatformDependent.isWindows()) {
+                try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+                    channel.force(true);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "DurabilityPolicy.ON_RENAME";
+        }
+    };
+
+    /**
+     * Returns a policy forcing the completed files from a dedicated thread, by batches of all the files completed
+     * within the given window, so that the flushes of concurrent uploads are grouped.
+     *
+     * @param window the maximum delay between the completion of a file and its flush
+     * @param unit the unit of the window
+     */
+    static GroupCommitDurabilityPolicy groupCommit(long window, TimeUnit unit) {
+        return new GroupCommitDurabilityPolicy(window, unit);
+    }
+
+    /**
+     * The whole content of a file was written. The file is only moved to its destination, and its write future
+     * completed, once the returned future is completed.
+     *
+     * @param channel the channel used to write the file, owned by the policy which is responsible for closing it
+     * @return the future completed once the file is forced, if it is, and closed, or failed if it cannot be forced
+     * @throws IOException if the file cannot be forced from the calling thread
+     */
+    Future<Void> completed(FileChannel channel) throws IOException;
+
+    /**
+     * A completed file was moved to its final destination with {@link HttpData#renameTo(File)}, or to the
+     * destination given to {@link AbstractDiskHttpData#setDestination}.
+     *
+     * @param dest the destination file
+     * @throws IOException if the file cannot be forced
+     */
+    default void renamed(File dest) throws IOException {
+    }
+}
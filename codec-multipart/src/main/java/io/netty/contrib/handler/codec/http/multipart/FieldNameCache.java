@@ -0,0 +1,187 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.buffer.Buffer;
+
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+
+import static io.netty5.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Bounded cache of the names of the fields, shared by the decoders of many requests through
+ * {@link DefaultHttpDataFactory#setFieldNameCache(FieldNameCache)}, so that a name received again and again gives
+ * the same String instead of a new one per request.
+ * <p>
+ * The names are looked up from their raw bytes, hashed where they were received, so that a cached name is found
+ * without allocating anything. The cache is a direct-mapped table: a name replaces the one of the same slot, so the
+ * number of names kept never exceeds the size given at construction, and the names longer than the maximum length
+ * are never cached. The table is softly referenced, so that it is dropped by the garbage collector under memory
+ * pressure, and rebuilt on the next lookup.
+ * <p>
+ * Thread safe: the entries are immutable, so a lookup racing with a replacement of its slot only misses.
+ */
+public final class FieldNameCache {
+
+    /**
+     * Default maximum length, in bytes, of the cached names
+     */
+    public static final int DEFAULT_MAX_NAME_LENGTH = 64;
+
+    private final int tableSize;
+    private final int maxNameLength;
+    private volatile SoftReference<Entry[]> tableRef = new SoftReference<>(null);
+
+    /**
+     * @param maxEntries the maximum number of names kept, rounded up to a power of 2
+     */
+    public FieldNameCache(int maxEntries) {
+        this(maxEntries, DEFAULT_MAX_NAME_LENGTH);
+    }
+
+    /**
+     * @param maxEntries the maximum number of names kept, rounded up to a power of 2
+     * @param maxNameLength the maximum length, in bytes, of the cached names
+     */
+    public FieldNameCache(int maxEntries, int maxNameLength) {
+        checkPositive(maxEntries, "maxEntries");
+        if (maxEntries > 1 << 30) {
+            throw new IllegalArgumentException("maxEntries: " + maxEntries + " (expected: <= " + (1 << 30) + ')');
+        }
+        this.tableSize = maxEntries == 1 ? 1 : Integer.highestOneBit(maxEntries - 1) << 1;
+        this.maxNameLength = checkPositive(maxNameLength, "maxNameLength");
+    }
+
+    /**
+     * @return the name made of the given bytes of the buffer, decoded with the given charset
+     */
+    public String intern(Buffer buffer, int offset, int length, Charset charset) {
+        if (length > maxNameLength) {
+            return Helpers.toString(buffer, offset, length, charset);
+        }
+        return lookup(buffer, offset, length, charset);
+    }
+
+    /**
+     * @return the name made of the given bytes of the array, decoded with the given charset
+     */
+    String intern(byte[] array, int offset, int length, Charset charset) {
+        if (length > maxNameLength) {
+            return new String(array, offset, length, charset);
+        }
+        return lookup(array, offset, length, charset);
+    }
+
+    /**
+     * Shared lookup and insert of the two variants of {@link #intern}, the source being a {@link Buffer} or a byte
+     * array, read through {@link #getByte(Object, int)} so that nothing is allocated on a hit.
+     */
+    private String lookup(Object source, int offset, int length, Charset charset) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + getByte(source, i);
+        }
+        hash = spread(hash);
+        Entry[] table = table();
+        int slot = hash & table.length - 1;
+        Entry entry = table[slot];
+        if (entry != null && entry.hash == hash && entry.matches(source, offset, length, charset)) {
+            return entry.value;
+        }
+        byte[] bytes = new byte[length];
+        if (source instanceof Buffer) {
+            ((Buffer) source).copyInto(offset, bytes, 0, length);
+        } else {
+            System.arraycopy(source, offset, bytes, 0, length);
+        }
+        entry = new Entry(hash, bytes, charset);
+        table[slot] = entry;
+        return entry.value;
+    }
+
+    /**
+     * @return the number of names currently cached
+     */
+    int size() {
+        Entry[] table = tableRef.get();
+        int size = 0;
+        if (table != null) {
+            for (Entry entry : table) {
+                if (entry != null) {
+                    size++;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Remove all the cached names
+     */
+    public void clear() {
+        tableRef = new SoftReference<>(null);
+    }
+
+    @Override
+    public String toString() {
+        return "FieldNameCache(maxEntries=" + tableSize + ", maxNameLength=" + maxNameLength + ')';
+    }
+
+    private Entry[] table() {
+        Entry[] table = tableRef.get();
+        if (table == null) {
+            // several threads may create a table at the same time, only one of them is kept
+            table = new Entry[tableSize];
+            tableRef = new SoftReference<>(table);
+        }
+        return table;
+    }
+
+    private static byte getByte(Object source, int index) {
+        return source instanceof Buffer ? ((Buffer) source).getByte(index) : ((byte[]) source)[index];
+    }
+
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+
+    private static final class Entry {
+        final int hash;
+        final byte[] bytes;
+        final Charset charset;
+        final String value;
+
+        Entry(int hash, byte[] bytes, Charset charset) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.charset = charset;
+            value = new String(bytes, charset);
+        }
+
+        boolean matches(Object source, int offset, int length, Charset charset) {
+            if (bytes.length != length || !this.charset.equals(charset)) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != getByte(source, offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
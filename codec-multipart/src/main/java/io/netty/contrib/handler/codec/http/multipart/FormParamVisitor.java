@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.buffer.Buffer;
+
+import java.io.IOException;
+
+/**
+ * Visitor notified by {@link HttpPostStandardRequestDecoder} while the parameters of an urlencoded body are decoded.
+ * <p>
+ * The names and values are pushed as soon as they are parsed, without creating any {@link Attribute} or String,
+ * so that they can be streamed to their final destination. A value received in several chunks is pushed
+ * incrementally, so a large value is never buffered in full by the decoder.
+ * <p>
+ * For each parameter, the decoder calls {@link #onKey(Buffer)}, then {@link #onValueChunk(Buffer, boolean)} one or
+ * more times, the last one with {@code last} set to {@code true}. The names and values given are percent-decoded,
+ * and are splits of the received chunks, so without copy unless they had to be decoded from a read-only chunk.
+ * <p>
+ * All methods are called from the thread calling {@link HttpPostStandardRequestDecoder#offer}.
+ */
+public interface FormParamVisitor {
+
+    /**
+     * A new parameter begins.
+     *
+     * @param key the decoded name, possibly empty if the body contains {@code =value}, owned by the visitor which
+     *            is responsible for closing it
+     * @throws IOException if the parameter cannot be handled
+     */
+    void onKey(Buffer key) throws IOException;
+
+    /**
+     * Some content of the value of the current parameter was decoded.
+     *
+     * @param value the decoded content, possibly empty, owned by the visitor which is responsible for closing it
+     * @param last {@code true} if this is the last content of the current parameter
+     * @throws IOException if the content cannot be handled
+     */
+    void onValueChunk(Buffer value, boolean last) throws IOException;
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty.contrib.handler.codec.http.multipart.HttpPostRequestDecoder.ErrorDataDecoderException;
+import io.netty5.buffer.Buffer;
+import io.netty5.buffer.DefaultBufferAllocators;
+import io.netty5.handler.codec.http.HttpRequest;
+import io.netty5.util.SafeCloseable;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parameters of an urlencoded body, as decoded by a {@link HttpPostStandardRequestDecoder} created with
+ * {@link HttpPostStandardRequestDecoder#HttpPostStandardRequestDecoder(HttpRequest, Charset, boolean)}, through
+ * a {@link FormParamVisitor}.
+ * <p>
+ * Instead of an {@link Attribute} and a name per parameter, the decoded names and values are stored one after the
+ * other in a single buffer, with a table of their offsets and lengths, so that a body with thousands of parameters
+ * only needs a few objects. The Strings are only created for the parameters asked for, each time they are asked for.
+ * <p>
+ * The parameters are looked up by name, ignoring the case of the ASCII letters, through a hash index built on the
+ * first lookup. The parameters are owned by their decoder, and closed by
+ * {@link HttpPostStandardRequestDecoder#destroy()}.
+ */
+public final class FormParameters implements SafeCloseable {
+
+    private static final int[] EMPTY_TABLE = new int[0];
+
+    /**
+     * Number of ints per parameter in the table: name offset, name length, value offset, value length
+     */
+    private static final int ENTRY_SIZE = 4;
+
+    private final Charset charset;
+    private Buffer data;
+    private int[] entries = EMPTY_TABLE;
+    private int size;
+
+    /**
+     * Open addressing hash index of the parameters, storing their index + 1, or {@code null} until the first lookup
+     */
+    private int[] hashIndex;
+
+    FormParameters(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * @return a visitor adding the decoded parameters to this table
+     */
+    FormParamVisitor visitor() {
+        return new FormParamVisitor() {
+            @Override
+            public void onKey(Buffer key) {
+                addName(key);
+            }
+
+            @Override
+            public void onValueChunk(Buffer value, boolean last) {
+                addValue(value);
+            }
+        };
+    }
+
+    /**
+     * Add a new parameter, with the given decoded name and an empty value
+     */
+    private void addName(Buffer name) {
+        int nameLength = name.readableBytes();
+        if (nameLength == 0) {
+            name.close();
+            throw new ErrorDataDecoderException("Empty parameter name");
+        }
+        int nameOffset = append(name);
+        if (entries.length < (size + 1) * ENTRY_SIZE) {
+            entries = Arrays.copyOf(entries, Math.max(16 * ENTRY_SIZE, entries.length * 2));
+        }
+        int entry = size++ * ENTRY_SIZE;
+        entries[entry] = nameOffset;
+        entries[entry + 1] = nameLength;
+        entries[entry + 2] = data.writerOffset();
+        entries[entry + 3] = 0;
+        hashIndex = null;
+    }
+
+    /**
+     * Add some decoded content to the value of the last parameter
+     */
+    private void addValue(Buffer value) {
+        entries[(size - 1) * ENTRY_SIZE + 3] += value.readableBytes();
+        append(value);
+    }
+
+    /**
+     * Copy the buffer at the end of the data, and close it
+     *
+     * @return the offset of the bytes in the data
+     */
+    private int append(Buffer buffer) {
+        try (buffer) {
+            int length = buffer.readableBytes();
+            if (data == null) {
+                data = DefaultBufferAllocators.onHeapAllocator().allocate(Math.max(length, 256));
+            }
+            data.ensureWritable(length, data.capacity(), false);
+            int start = data.writerOffset();
+            data.writeBytes(buffer);
+            return start;
+        }
+    }
+
+    /**
+     * @return the number of parameters
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if there is no parameter
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the name of the parameter at the given index, in the order of the body
+     */
+    public String name(int index) {
+        int entry = entry(index);
+        return toString(entries[entry], entries[entry + 1]);
+    }
+
+    /**
+     * @return the value of the parameter at the given index, in the order of the body
+     */
+    public String value(int index) {
+        int entry = entry(index);
+        return toString(entries[entry + 2], entries[entry + 3]);
+    }
+
+    /**
+     * @return {@code true} if there is at least one parameter with the given name (ignoring case)
+     */
+    public boolean contains(String name) {
+        return indexOf(name) != -1;
+    }
+
+    /**
+     * @return the value of the first parameter with the given name (ignoring case), or {@code null} if none
+     */
+    public String get(String name) {
+        int index = indexOf(name);
+        return index == -1 ? null : value(index);
+    }
+
+    /**
+     * @return the values of all the parameters with the given name (ignoring case), in the order of the body
+     */
+    public List<String> getAll(String name) {
+        byte[] bytes = name.getBytes(charset);
+        int[] hashIndex = hashIndex();
+        int mask = hashIndex.length - 1;
+        List<String> values = null;
+        for (int slot = hash(bytes) & mask; hashIndex[slot] != 0; slot = slot + 1 & mask) {
+            int index = hashIndex[slot] - 1;
+            if (nameEquals(index, bytes)) {
+                if (values == null) {
+                    values = new ArrayList<>(2);
+                }
+                values.add(value(index));
+            }
+        }
+        return values == null ? Collections.emptyList() : values;
+    }
+
+    /**
+     * @return the index of the first parameter with the given name (ignoring case), or -1 if none
+     */
+    public int indexOf(String name) {
+        byte[] bytes = name.getBytes(charset);
+        int[] hashIndex = hashIndex();
+        int mask = hashIndex.length - 1;
+        for (int slot = hash(bytes) & mask; hashIndex[slot] != 0; slot = slot + 1 & mask) {
+            int index = hashIndex[slot] - 1;
+            if (nameEquals(index, bytes)) {
+                // the parameters of a same name are inserted in order along the probe sequence
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        if (data != null) {
+            data.close();
+            data = null;
+        }
+        entries = EMPTY_TABLE;
+        size = 0;
+        hashIndex = null;
+    }
+
+    @Override
+    public String toString() {
+        return "FormParameters(size=" + size + ')';
+    }
+
+    private int entry(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + " (expected: 0-" + (size - 1) + ')');
+        }
+        return index * ENTRY_SIZE;
+    }
+
+    private String toString(int offset, int length) {
+        return length == 0 ? "" : Helpers.toString(data, offset, length, charset);
+    }
+
+    private int[] hashIndex() {
+        if (hashIndex == null) {
+            // at most half full
+            int[] table = new int[Integer.highestOneBit(size * 2 + 1) << 1];
+            int mask = table.length - 1;
+            for (int index = 0; index < size; index++) {
+                int entry = index * ENTRY_SIZE;
+                int slot = hash(entries[entry], entries[entry + 1]) & mask;
+                while (table[slot] != 0) {
+                    slot = slot + 1 & mask;
+                }
+                table[slot] = index + 1;
+            }
+            hashIndex = table;
+        }
+        return hashIndex;
+    }
+
+    private int hash(int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + toLowerCase(data.getByte(i));
+        }
+        return spread(hash);
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 0;
+        for (byte value : bytes) {
+            hash = 31 * hash + toLowerCase(value);
+        }
+        return spread(hash);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+
+    private boolean nameEquals(int index, byte[] bytes) {
+        int entry = index * ENTRY_SIZE;
+        if (entries[entry + 1] != bytes.length) {
+            return false;
+        }
+        int offset = entries[entry];
+        for (int i = 0; i < bytes.length; i++) {
+            if (toLowerCase(data.getByte(offset + i)) != toLowerCase(bytes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerCase(byte value) {
+        return value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value;
+    }
+}
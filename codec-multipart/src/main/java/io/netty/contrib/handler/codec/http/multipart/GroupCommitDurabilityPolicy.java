@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.util.concurrent.DefaultThreadFactory;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.ImmediateEventExecutor;
+import io.netty5.util.concurrent.Promise;
+import io.netty5.util.internal.ObjectUtil;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DurabilityPolicy} forcing the completed files from a dedicated thread, by batches of all the files
+ * completed within a time window.
+ * <p>
+ * The thread adding the content never waits for the flush, and the storage can group the flushes of many
+ * concurrent uploads into a single commit. The {@linkplain HttpData#writeFuture() write future} of a file is only
+ * completed, and the file moved to its destination, once the file is forced and closed, and it is failed if the file
+ * cannot be forced. {@link #close()} forces the pending files and stops the thread.
+ */
+public final class GroupCommitDurabilityPolicy implements DurabilityPolicy, AutoCloseable {
+
+    private final long windowNanos;
+    private final ScheduledExecutorService syncer;
+
+    /**
+     * Files completed since the last commit, guarded by this
+     */
+    private List<PendingFile> batch = new ArrayList<>();
+
+    /**
+     * @param window the maximum delay between the completion of a file and its flush
+     * @param unit the unit of the window
+     */
+    public GroupCommitDurabilityPolicy(long window, TimeUnit unit) {
+        windowNanos = unit.toNanos(ObjectUtil.checkPositiveOrZero(window, "window"));
+        syncer = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory(GroupCommitDurabilityPolicy.class, true));
+    }
+
+    @Override
+    public Future<Void> completed(FileChannel channel) {
+        PendingFile file = new PendingFile(channel);
+        boolean first;
+        synchronized (this) {
+            first = batch.isEmpty();
+            batch.add(file);
+        }
+        if (first) {
+            try {
+                syncer.schedule(this::commit, windowNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // already closed
+                commit();
+            }
+        }
+        return file.committed.asFuture();
+    }
+
+    private void commit() {
+        List<PendingFile> files;
+        synchronized (this) {
+            files = batch;
+            batch = new ArrayList<>();
+        }
+        for (PendingFile file : files) {
+            IOException failure = null;
+            try {
+                file.channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                try {
+                    file.channel.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                file.committed.setFailure(failure);
+            } else {
+                file.committed.setSuccess(null);
+            }
+        }
+    }
+
+    /**
+     * Force the files not yet committed and stop the thread.
+     */
+    @Override
+    public void close() {
+        syncer.shutdown();
+        commit();
+    }
+
+    @Override
+    public String toString() {
+        return "GroupCommitDurabilityPolicy(window=" + windowNanos + "ns)";
+    }
+
+    private static final class PendingFile {
+        final FileChannel channel;
+        final Promise<Void> committed = ImmediateEventExecutor.INSTANCE.newPromise();
+
+        PendingFile(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
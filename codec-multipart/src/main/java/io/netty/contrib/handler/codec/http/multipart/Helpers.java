@@ -16,11 +16,14 @@
 
 import io.netty5.buffer.Buffer;
 import io.netty5.buffer.DefaultBufferAllocators;
+import io.netty5.buffer.Drop;
+import io.netty5.buffer.MemoryManager;
 import io.netty5.handler.codec.http.DefaultLastHttpContent;
 import io.netty5.handler.codec.http.EmptyLastHttpContent;
 import io.netty5.util.AsciiString;
 import io.netty5.util.Resource;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -33,6 +36,30 @@ import static java.nio.charset.StandardCharsets.US_ASCII;
  */
 public class Helpers {
 
+    /**
+     * Memory manager able to wrap a ByteBuffer, if available
+     */
+    private static final MemoryManager BYTE_BUFFER_MEMORY_MANAGER =
+            MemoryManager.lookupImplementation("ByteBuffer").orElse(null);
+
+    /**
+     * The wrapped ByteBuffers are released by the GC
+     */
+    private static final Drop<Buffer> NO_OP_DROP = new Drop<>() {
+        @Override
+        public void drop(Buffer obj) {
+        }
+
+        @Override
+        public Drop<Buffer> fork() {
+            return this;
+        }
+
+        @Override
+        public void attach(Buffer obj) {
+        }
+    };
+
     /**
      * A Consumer which can throw an Exception.
      *
@@ -68,10 +95,52 @@ public class Helpers {
         return buf;
     }
 
+    /**
+     * Compose the given buffers, all made read-only if one of them is read-only.
+     */
     static Buffer toComposite(Buffer ... bufs) {
+        for (Buffer buf : bufs) {
+            if (buf.readOnly()) {
+                for (Buffer other : bufs) {
+                    other.makeReadOnly();
+                }
+                break;
+            }
+        }
         return DefaultBufferAllocators.onHeapAllocator().compose(Stream.of(bufs).map(Resource::send).collect(Collectors.toList()));
     }
 
+    /**
+     * Composite buffers can only be made of buffers having the same read-only state,
+     * so if one of the two given buffers is read-only, make the other one read-only too.
+     */
+    static void sameReadOnly(Buffer first, Buffer second) {
+        if (first.readOnly() != second.readOnly()) {
+            if (first.readOnly()) {
+                second.makeReadOnly();
+            } else {
+                first.makeReadOnly();
+            }
+        }
+    }
+
+    /**
+     * Wrap the remaining bytes of the given ByteBuffer, for instance a mapped file, as a read-only Buffer
+     * without any copy, or with a copy if no memory manager can wrap a ByteBuffer.
+     */
+    static Buffer wrapReadOnly(ByteBuffer byteBuffer) {
+        ByteBuffer slice = byteBuffer.slice();
+        Buffer buffer;
+        if (BYTE_BUFFER_MEMORY_MANAGER != null) {
+            buffer = BYTE_BUFFER_MEMORY_MANAGER.recoverMemory(
+                    DefaultBufferAllocators::offHeapAllocator, slice, NO_OP_DROP);
+            buffer.writerOffset(slice.capacity());
+        } else {
+            buffer = DefaultBufferAllocators.offHeapAllocator().copyOf(slice);
+        }
+        return buffer.makeReadOnly();
+    }
+
     static EmptyLastHttpContent emptyLastHttpContent() {
         return new EmptyLastHttpContent(DefaultBufferAllocators.preferredAllocator());
     }
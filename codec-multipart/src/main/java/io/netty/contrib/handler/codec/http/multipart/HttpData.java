@@ -16,12 +16,21 @@
 package io.netty.contrib.handler.codec.http.multipart;
 
 import io.netty5.buffer.Buffer;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.ImmediateEventExecutor;
+import io.netty5.util.internal.ObjectUtil;
 import io.netty.contrib.handler.codec.http.multipart.Helpers.ThrowingConsumer;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.util.Objects;
 
 /**
  * Extended interface for InterfaceHttpData
@@ -93,6 +102,32 @@ public interface HttpData extends InterfaceHttpData {
      */
     boolean isCompleted();
 
+    /**
+     * Returns the future completed once the content added so far is written to its storage, and so once
+     * the whole content is stored when {@link #isCompleted()}.
+     * <p>
+     * It is only pending if the content is written asynchronously, see
+     * {@link AbstractDiskHttpData#setWriteExecutor}.
+     */
+    default Future<Void> writeFuture() {
+        return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+    }
+
+    /**
+     * Returns {@code false} if too much content is waiting to be written asynchronously, in which case
+     * the reading of the content should be suspended until {@link #writableFuture()} is completed.
+     */
+    default boolean isWritable() {
+        return true;
+    }
+
+    /**
+     * Returns the future completed once this HttpData is writable again, see {@link #isWritable()}.
+     */
+    default Future<Void> writableFuture() {
+        return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+    }
+
     /**
      * Returns the size in byte of the InterfaceHttpData
      *
@@ -162,6 +197,75 @@ public interface HttpData extends InterfaceHttpData {
      */
     Buffer getChunk(int length) throws IOException;
 
+    /**
+     * Returns a new {@link InputStream} reading the content held by this data from its beginning, with its own
+     * position, independently of any other reader, so that the content can be processed in constant memory.
+     * <p>
+     * The content is not copied: a data in memory must not be modified while read, and a data on disk is read
+     * from its file. The position of {@link #getChunk(int)} is not used, but a data in memory gives the bytes of
+     * its chunks away, so these bytes are not read by the stream anymore. The stream must be closed by the caller.
+     * <p>
+     * The default implementation reads a copy of the content given by {@link #get()}.
+     *
+     * @return a new stream on the content
+     * @throws IOException if the content cannot be read
+     */
+    default InputStream openInputStream() throws IOException {
+        return new ByteArrayInputStream(get());
+    }
+
+    /**
+     * Returns a new {@link ReadableByteChannel} reading the content held by this data from its beginning, with its
+     * own position, see {@link #openInputStream()}. The channel must be closed by the caller.
+     * <p>
+     * The default implementation reads the stream given by {@link #openInputStream()}.
+     *
+     * @return a new channel on the content
+     * @throws IOException if the content cannot be read
+     */
+    default ReadableByteChannel openChannel() throws IOException {
+        return Channels.newChannel(openInputStream());
+    }
+
+    /**
+     * Transfer the content from the given position to the given channel, without copying it through the heap:
+     * a data on disk uses {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}
+     * (sendfile on Linux), and a data in memory writes its buffer directly. The content is not consumed, and
+     * the position is the one in the content held by this data, like for {@link #openInputStream()}: the bytes of
+     * the chunks already given away by a data in memory are not counted.
+     * <p>
+     * Fewer bytes than requested are transferred if the content is shorter, or if a non-blocking target cannot
+     * accept more bytes.
+     * <p>
+     * The default implementation writes a copy of the content given by {@link #get()}.
+     *
+     * @param target the channel to write to
+     * @param position the position in the content of the first byte to transfer
+     * @param count the maximum number of bytes to transfer
+     * @return the number of bytes transferred
+     * @throws IOException if the content cannot be read or the target cannot be written
+     */
+    default long transferTo(WritableByteChannel target, long position, long count) throws IOException {
+        Objects.requireNonNull(target, "target");
+        ObjectUtil.checkPositiveOrZero(position, "position");
+        ObjectUtil.checkPositiveOrZero(count, "count");
+        byte[] content = get();
+        if (position >= content.length) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(content, (int) position, (int) Math.min(count, content.length - position));
+        long transferred = 0;
+        while (buffer.hasRemaining()) {
+            int written = target.write(buffer);
+            if (written <= 0) {
+                // non-blocking target full
+                break;
+            }
+            transferred += written;
+        }
+        return transferred;
+    }
+
     /**
      * Returns the contents of the file item as a String, using the default
      * character encoding.
@@ -224,7 +328,8 @@ public interface HttpData extends InterfaceHttpData {
      *
      * @return the associated File if this data is represented in a file
      * @exception IOException
-     *                if this data is not represented by a file
+     *                if this data is not represented by a file, or if its content is spooled with the content
+     *                of other data and not completed yet
      */
     File getFile() throws IOException;
 
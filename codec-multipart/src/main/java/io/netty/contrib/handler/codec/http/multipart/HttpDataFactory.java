@@ -30,6 +30,14 @@ public interface HttpDataFactory {
      */
     void setMaxLimit(long max);
 
+    /**
+     * @return the cache of the names of the fields, shared by the decoders using this factory, or {@code null}
+     *         to create the names of each request
+     */
+    default FieldNameCache getFieldNameCache() {
+        return null;
+    }
+
     /**
      *
      * @param request associated request
@@ -17,9 +17,14 @@ package io.netty.contrib.handler.codec.http.multipart;
 
 import io.netty5.buffer.Buffer;
 import io.netty5.buffer.ByteCursor;
+import io.netty5.buffer.CompositeBuffer;
+import io.netty5.buffer.DefaultBufferAllocators;
 import io.netty5.handler.codec.http.HttpConstants;
 import io.netty5.util.ByteProcessor;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * Shared Static object between HttpMessageDecoder, HttpPostRequestDecoder and HttpPostRequestEncoder
  */
@@ -42,6 +47,44 @@ final class HttpPostBodyUtil {
      */
     private final static ByteProcessor.IndexOfProcessor LF_PROCESSOR = new ByteProcessor.IndexOfProcessor(HttpConstants.LF);
 
+    /**
+     * Masks used to find bytes 8 at a time in a long (SWAR)
+     */
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * Append the readable bytes of the given payload at the end of the segments queue, without any copy,
+     * since the payload will be closed by its owner later on, such that the payload is left empty.
+     *
+     * @param segments the segments queue, or {@code null} if not yet created
+     * @param payload the received buffer
+     * @return the segments queue
+     */
+    static CompositeBuffer appendSegment(CompositeBuffer segments, Buffer payload) {
+        if (segments == null) {
+            segments = DefaultBufferAllocators.onHeapAllocator().compose();
+        }
+        if (payload.readableBytes() > 0) {
+            Buffer segment = payload.readSplit(payload.readableBytes());
+            Helpers.sameReadOnly(segments, segment);
+            segments.extendWith(segment.send());
+        }
+        return segments;
+    }
+
+    /**
+     * Release the already read bytes of the segments queue, therefore the segments which are fully read,
+     * without any copy.
+     *
+     * @param segments the segments queue
+     */
+    static void discardReadSegments(CompositeBuffer segments) {
+        if (segments.readerOffset() > 0) {
+            segments.split(segments.readerOffset()).close();
+        }
+    }
+
     /**
      * Allowed mechanism for multipart
      * mechanism := "7bit"
@@ -121,6 +164,9 @@ final class HttpPostBodyUtil {
      */
     static int findLineBreak(Buffer buffer, int index) {
         int toRead = buffer.readableBytes() - (index - buffer.readerOffset());
+        if (toRead <= 0) {
+            return -1;
+        }
         ByteCursor cursor = buffer.openCursor(index, toRead);
         int posFirstChar = cursor.process(LF_PROCESSOR);
 
@@ -135,102 +181,81 @@ final class HttpPostBodyUtil {
     }
 
     /**
-     * Try to find last LF or CRLF as Line Breaking
+     * Find the first occurrence of any of the two given bytes, from the given index up to the writer offset of the
+     * buffer, see {@link #indexOfAny(Buffer, int, byte, byte, byte)}.
      *
      * @param buffer the buffer to search in
-     * @param index the index to start from in the buffer
-     * @return a relative position from index > 0 if LF or CRLF is found
-     *         or < 0 if not found
+     * @param fromIndex the absolute index to start from, not less than the reader offset
+     * @return the absolute index of the first byte found, or -1 if not found
      */
-    static int findLastLineBreak(Buffer buffer, int index) {
-        // TODO, see if we can allocate one single Cursor, and pass it as arguments to the
-        // findLineBreak method
-        int candidate = findLineBreak(buffer, index);
-        int findCRLF = 0;
-        if (candidate >= 0) {
-            if (buffer.getByte(index + candidate) == HttpConstants.CR) {
-                findCRLF = 2;
-            } else {
-                findCRLF = 1;
-            }
-            candidate += findCRLF;
-        }
-        int next;
-        while (candidate > 0 && (next = findLineBreak(buffer, index + candidate)) >= 0) {
-            candidate += next;
-            if (buffer.getByte(index + candidate) == HttpConstants.CR) {
-                findCRLF = 2;
-            } else {
-                findCRLF = 1;
-            }
-            candidate += findCRLF;
-        }
-        return candidate - findCRLF;
+    static int indexOfAny(Buffer buffer, int fromIndex, byte first, byte second) {
+        return indexOfAny(buffer, fromIndex, 2, first, second, second);
     }
 
     /**
-     * Try to find the delimiter, with LF or CRLF in front of it (added as delimiters) if needed
+     * Find the first occurrence of any of the three given bytes, from the given index up to the writer offset of
+     * the buffer.
+     * <p>
+     * The readable components of the buffer are read 8 bytes at a time, and the bytes are compared to all the searched
+     * bytes at once with bitwise operations (SWAR), instead of going through the buffer API for each byte.
      *
      * @param buffer the buffer to search in
-     * @param index the index to start from in the buffer
-     * @param delimiter the delimiter as byte array
-     * @param precededByLineBreak true if it must be preceded by LF or CRLF, else false
-     * @return a relative position from index > 0 if delimiter found designing the start of it
-     *         (including LF or CRLF is asked)
-     *         or a number < 0 if delimiter is not found
-     * @throws IndexOutOfBoundsException
-     *         if {@code offset + delimiter.length} is greater than {@code buffer.capacity}
+     * @param fromIndex the absolute index to start from, not less than the reader offset
+     * @return the absolute index of the first byte found, or -1 if not found
      */
-    static int findDelimiter(Buffer buffer, int index, byte[] delimiter, boolean precededByLineBreak) {
-        final int delimiterLength = delimiter.length;
-        final int readerIndex = buffer.readerOffset();
-        final int writerIndex = buffer.writerOffset();
-        int toRead = writerIndex - index;
-        int newOffset = index;
-        boolean delimiterNotFound = true;
-        // TODO refactor the following loop in order to avoid loops and instead
-        // rely on Cursors more appropriately
-        while (delimiterNotFound && delimiterLength <= toRead) {
-            // Find first position: delimiter
-            ByteCursor cursor = buffer.openCursor(newOffset, toRead);
-            int posDelimiter = cursor.process(value -> value != delimiter[0]);
-            if (posDelimiter < 0) {
-                return -1;
-            }
-            newOffset += posDelimiter;
-            toRead -= posDelimiter;
-            // Now check for delimiter
-            if (toRead >= delimiterLength) {
-                delimiterNotFound = false;
-                for (int i = 0; i < delimiterLength; i++) {
-                    if (buffer.getByte(newOffset + i) != delimiter[i]) {
-                        newOffset++;
-                        toRead--;
-                        delimiterNotFound = true;
-                        break;
+    static int indexOfAny(Buffer buffer, int fromIndex, byte first, byte second, byte third) {
+        return indexOfAny(buffer, fromIndex, 3, first, second, third);
+    }
+
+    /**
+     * @param count the number of bytes searched, 2 to only search the first two bytes
+     */
+    private static int indexOfAny(Buffer buffer, int fromIndex, int count, byte first, byte second, byte third) {
+        if (fromIndex >= buffer.writerOffset()) {
+            return -1;
+        }
+        final long firstPattern = (first & 0xFFL) * LOW_BITS;
+        final long secondPattern = (second & 0xFFL) * LOW_BITS;
+        final long thirdPattern = (third & 0xFFL) * LOW_BITS;
+        int componentStart = buffer.readerOffset();
+        try (var iterator = buffer.forEachComponent()) {
+            for (var component = iterator.firstReadable(); component != null; component = component.nextReadable()) {
+                ByteBuffer bytes = component.readableBuffer().order(ByteOrder.LITTLE_ENDIAN);
+                int componentEnd = componentStart + bytes.remaining();
+                if (componentEnd > fromIndex) {
+                    int position = bytes.position() + Math.max(0, fromIndex - componentStart);
+                    final int limit = bytes.limit();
+                    for (; position <= limit - Long.BYTES; position += Long.BYTES) {
+                        long word = bytes.getLong(position);
+                        long found = matches(word, firstPattern) | matches(word, secondPattern);
+                        if (count == 3) {
+                            found |= matches(word, thirdPattern);
+                        }
+                        if (found != 0) {
+                            // little endian: the lowest match is the first byte found, and is always exact
+                            return componentStart + position - bytes.position() +
+                                   (Long.numberOfTrailingZeros(found) >>> 3);
+                        }
                     }
-                }
-            }
-            if (!delimiterNotFound) {
-                // Delimiter found, find if necessary: LF or CRLF
-                if (precededByLineBreak && newOffset > readerIndex) {
-                    if (buffer.getByte(newOffset - 1) == HttpConstants.LF) {
-                        newOffset--;
-                        // Check if CR before: not mandatory to be there
-                        if (newOffset > readerIndex && buffer.getByte(newOffset - 1) == HttpConstants.CR) {
-                            newOffset--;
+                    for (; position < limit; position++) {
+                        byte value = bytes.get(position);
+                        if (value == first || value == second || value == third) {
+                            return componentStart + position - bytes.position();
                         }
-                    } else {
-                        // Delimiter with Line Break could be further: iterate after first char of delimiter
-                        newOffset++;
-                        toRead--;
-                        delimiterNotFound = true;
-                        continue;
                     }
                 }
-                return newOffset - readerIndex;
+                componentStart = componentEnd;
             }
         }
         return -1;
     }
+
+    /**
+     * @return the high bit of each byte of the word equal to the byte of the pattern set, the bits above the first
+     *         one being possibly wrong
+     */
+    private static long matches(long word, long pattern) {
+        long input = word ^ pattern;
+        return (input - LOW_BITS) & ~input & HIGH_BITS;
+    }
 }
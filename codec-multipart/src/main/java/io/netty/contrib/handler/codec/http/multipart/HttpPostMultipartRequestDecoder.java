@@ -22,11 +22,9 @@ import io.netty.contrib.handler.codec.http.multipart.HttpPostRequestDecoder.Mult
 import io.netty.contrib.handler.codec.http.multipart.HttpPostRequestDecoder.NotEnoughDataDecoderException;
 import java.nio.charset.StandardCharsets;
 import io.netty5.util.internal.PlatformDependent;
-import io.netty5.util.internal.StringUtil;
 import io.netty5.buffer.Buffer;
-import io.netty5.buffer.BufferAllocator;
 import io.netty5.buffer.ByteCursor;
-import io.netty5.buffer.DefaultBufferAllocators;
+import io.netty5.buffer.CompositeBuffer;
 import io.netty5.handler.codec.http.HttpConstants;
 import io.netty5.handler.codec.http.HttpContent;
 import io.netty5.handler.codec.http.HttpHeaderNames;
@@ -34,6 +32,7 @@ import io.netty5.handler.codec.http.HttpHeaderValues;
 import io.netty5.handler.codec.http.HttpRequest;
 import io.netty5.handler.codec.http.LastHttpContent;
 import io.netty5.handler.codec.http.QueryStringDecoder;
+import io.netty5.util.AsciiString;
 import io.netty5.util.ByteProcessor;
 
 import java.io.IOException;
@@ -88,9 +87,9 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
             CaseIgnoringComparator.INSTANCE);
 
     /**
-     * The current channelBuffer
+     * The received but not yet decoded segments
      */
-    private Buffer undecodedChunk;
+    private CompositeBuffer undecodedChunk;
 
     /**
      * Body HttpDatas current position
@@ -108,30 +107,77 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
      */
     private String multipartMixedBoundary;
 
+    /**
+     * Precompiled matcher for {@link #multipartDataBoundary}
+     */
+    private final BoundaryMatcher dataBoundaryMatcher;
+
+    /**
+     * Precompiled matcher for {@link #multipartMixedBoundary}
+     */
+    private BoundaryMatcher mixedBoundaryMatcher;
+
+    /**
+     * Parser of the header lines of the parts
+     */
+    private final MultipartHeaderParser headerParser;
+
     /**
      * Current getStatus
      */
     private MultiPartStatus currentStatus = MultiPartStatus.NOTSTARTED;
 
     /**
-     * Used in Multipart
+     * In Mixed mode, the name of the field holding the files
+     */
+    private String mixedPartName;
+
+    /**
+     * Listener notified of the decoded parts
+     */
+    private final MultipartListener listener;
+
+    /**
+     * Headers of the part currently in decode process
      */
-    private Map<CharSequence, Attribute> currentFieldAttributes;
+    private PartHeaders currentPartHeaders;
 
     /**
-     * The current FileUpload that is currently in decode process
+     * True once the listener was notified of the beginning of the current part
      */
-    private FileUpload currentFileUpload;
+    private boolean currentPartBegun;
 
     /**
-     * The current Attribute that is currently in decode process
+     * Number of content bytes of the current part already given to the listener
      */
-    private Attribute currentAttribute;
+    private long currentPartLength;
+
+    /**
+     * Filter of the parts to decode, or null to decode all of them
+     */
+    private PartFilter partFilter;
+
+    /**
+     * True if the current part is rejected by the filter, so its content is skipped
+     */
+    private boolean currentPartSkipped;
+
+    /**
+     * Maximum size of the content of the current part, or -1 if not limited
+     */
+    private long currentPartMaxSize = -1;
 
     private boolean destroyed;
 
     private int discardThreshold = HttpPostRequestDecoder.DEFAULT_DISCARD_THRESHOLD;
 
+    /**
+     * Status returned by {@link #readDelimiterOptimized(Buffer, BoundaryMatcher)}
+     */
+    private static final int DELIMITER_NOT_ENOUGH_DATA = 0;
+    private static final int DELIMITER_OPENING = 1;
+    private static final int DELIMITER_CLOSING = 2;
+
     private final static ByteProcessor CTRLSPACE_PROCESSOR = value -> Character.isISOControl(value) || Character.isWhitespace(value);
 
     /**
@@ -179,9 +225,54 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
      *             errors
      */
     public HttpPostMultipartRequestDecoder(HttpDataFactory factory, HttpRequest request, Charset charset) {
+        this(factory, request, charset, null);
+    }
+
+    /**
+     * Create a decoder which does not create any {@link InterfaceHttpData}, but pushes the decoded parts
+     * to the given listener instead.
+     *
+     * @param request
+     *            the request to decode
+     * @param listener
+     *            the listener notified of the decoded parts
+     * @throws NullPointerException
+     *             for request or listener
+     * @throws ErrorDataDecoderException
+     *             if the default charset was wrong when decoding or other
+     *             errors
+     */
+    public HttpPostMultipartRequestDecoder(HttpRequest request, MultipartListener listener) {
+        this(request, HttpConstants.DEFAULT_CHARSET, listener);
+    }
+
+    /**
+     * Create a decoder which does not create any {@link InterfaceHttpData}, but pushes the decoded parts
+     * to the given listener instead.
+     *
+     * @param request
+     *            the request to decode
+     * @param charset
+     *            the charset to use as default
+     * @param listener
+     *            the listener notified of the decoded parts
+     * @throws NullPointerException
+     *             for request or charset or listener
+     * @throws ErrorDataDecoderException
+     *             if the default charset was wrong when decoding or other
+     *             errors
+     */
+    public HttpPostMultipartRequestDecoder(HttpRequest request, Charset charset, MultipartListener listener) {
+        this(new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE), request, charset,
+             checkNotNullWithIAE(listener, "listener"));
+    }
+
+    private HttpPostMultipartRequestDecoder(HttpDataFactory factory, HttpRequest request, Charset charset,
+                                            MultipartListener listener) {
         this.request = checkNotNullWithIAE(request, "request");
         this.charset = checkNotNullWithIAE(charset, "charset");
         this.factory = checkNotNullWithIAE(factory, "factory");
+        this.listener = listener != null ? listener : new HttpDataListener();
         // Fill default values
 
         CharSequence contentTypeValue = this.request.headers().get(HttpHeaderNames.CONTENT_TYPE);
@@ -202,6 +293,9 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
         } else {
             multipartDataBoundary = null;
         }
+        dataBoundaryMatcher = multipartDataBoundary != null ?
+                new BoundaryMatcher(multipartDataBoundary, this.charset) : null;
+        headerParser = new MultipartHeaderParser(this.charset, factory.getFieldNameCache());
         currentStatus = MultiPartStatus.HEADERDELIMITER;
 
         try {
@@ -237,23 +331,41 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
     }
 
     /**
-     * Set the amount of bytes after which read bytes in the buffer should be discarded.
-     * Setting this lower gives lower memory usage but with the overhead of more memory copies.
-     * Use {@code 0} to disable it.
+     * @deprecated No-op, see {@link InterfaceHttpPostRequestDecoder#setDiscardThreshold(int)}.
      */
+    @Deprecated
     @Override
     public void setDiscardThreshold(int discardThreshold) {
         this.discardThreshold = checkPositiveOrZero(discardThreshold, "discardThreshold");
     }
 
     /**
-     * Return the threshold in bytes after which read data in the buffer should be discarded.
+     * @deprecated The threshold is not used, see {@link InterfaceHttpPostRequestDecoder#setDiscardThreshold(int)}.
      */
+    @Deprecated
     @Override
     public int getDiscardThreshold() {
         return discardThreshold;
     }
 
+    /**
+     * Set the filter of the parts to decode. The content of a rejected part is skipped up to the next delimiter,
+     * without creating any {@link InterfaceHttpData}, and the content of an accepted part is limited to the size
+     * given by the filter.
+     *
+     * @param partFilter the filter, or {@code null} to decode all the parts
+     */
+    public void setPartFilter(PartFilter partFilter) {
+        this.partFilter = partFilter;
+    }
+
+    /**
+     * Return the filter of the parts to decode, or {@code null} if all the parts are decoded.
+     */
+    public PartFilter getPartFilter() {
+        return partFilter;
+    }
+
     /**
      * This getMethod returns a List of all HttpDatas from body.<br>
      *
@@ -338,22 +450,11 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
             isLastChunk = true;
         }
 
-        Buffer buf = content.payload();
-        if (undecodedChunk == null) {
-            BufferAllocator alloc = buf.isDirect() ? DefaultBufferAllocators.offHeapAllocator() : DefaultBufferAllocators.onHeapAllocator();
-            undecodedChunk =
-                    // Since the Handler will release the incoming later on, we need to copy it
-                    //
-                    // We are explicit allocate a buffer and NOT calling copy() as otherwise it may set a maxCapacity
-                    // which is not really usable for us as we may exceed it once we add more bytes.
-                    alloc.allocate(buf.readableBytes()).writeBytes(buf);
-        } else {
-            undecodedChunk.writeBytes(buf);
-        }
+        // Received chunks are kept as segments, without copy, and released as soon as they are read
+        undecodedChunk = HttpPostBodyUtil.appendSegment(undecodedChunk, content.payload());
         parseBody();
-        if (undecodedChunk != null && undecodedChunk.writerOffset() > discardThreshold) {
-            // It's safe to call compact() as we are the only owner of the buffer.
-            undecodedChunk.compact();
+        if (undecodedChunk != null) {
+            HttpPostBodyUtil.discardReadSegments(undecodedChunk);
         }
         return this;
     }
@@ -403,13 +504,32 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
         return null;
     }
 
+    @Override
+    public InterfaceHttpData poll() {
+        checkDestroyed();
+
+        if (bodyListHttpDataRank < bodyListHttpData.size()) {
+            return bodyListHttpData.get(bodyListHttpDataRank++);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isEndOfData() {
+        checkDestroyed();
+
+        // The closing delimiter may be found in the last chunk, before the EPILOGUE status is set
+        return (currentStatus == MultiPartStatus.EPILOGUE ||
+                currentStatus == MultiPartStatus.PREEPILOGUE && isLastChunk) &&
+               bodyListHttpDataRank >= bodyListHttpData.size();
+    }
+
     @Override
     public InterfaceHttpData currentPartialHttpData() {
-        if (currentFileUpload != null) {
-            return currentFileUpload;
-        } else {
-            return currentAttribute;
+        if (listener instanceof HttpDataListener) {
+            return ((HttpDataListener) listener).currentData;
         }
+        return null;
     }
 
     /**
@@ -457,13 +577,11 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
             // nothing to decode
             return;
         }
-        InterfaceHttpData data = decodeMultipart(currentStatus);
-        while (data != null) {
-            addHttpData(data);
-            if (currentStatus == MultiPartStatus.PREEPILOGUE || currentStatus == MultiPartStatus.EPILOGUE) {
+        while (currentStatus != MultiPartStatus.PREEPILOGUE && currentStatus != MultiPartStatus.EPILOGUE) {
+            if (!decodeMultipart(currentStatus)) {
+                // Need more chunks
                 break;
             }
-            data = decodeMultipart(currentStatus);
         }
     }
 
@@ -478,12 +596,16 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
      * CLOSEDELIMITER)+ EPILOGUE<br>
      *
      * Inspired from HttpMessageDecoder
+     * <p>
+     * Each call decodes only the current step, so that the caller loops as long as some progress is made,
+     * without any recursion nor exception when the available data is not enough.
      *
-     * @return the next decoded InterfaceHttpData or null if none until now.
+     * @return true if the current step is done and the status changed, false if more chunks are needed
+     *         or the end is reached
      * @throws ErrorDataDecoderException
      *             if an error occurs
      */
-    private InterfaceHttpData decodeMultipart(MultiPartStatus state) {
+    private boolean decodeMultipart(MultiPartStatus state) {
         switch (state) {
         case NOTSTARTED:
             throw new ErrorDataDecoderException("Should not be called with the current getStatus");
@@ -492,7 +614,7 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
             throw new ErrorDataDecoderException("Should not be called with the current getStatus");
         case HEADERDELIMITER: {
             // --AaB03x or --AaB03x--
-            return findMultipartDelimiter(multipartDataBoundary, MultiPartStatus.DISPOSITION,
+            return findMultipartDelimiter(dataBoundaryMatcher, MultiPartStatus.DISPOSITION,
                     MultiPartStatus.PREEPILOGUE);
         }
         case DISPOSITION: {
@@ -508,83 +630,45 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
             return findMultipartDisposition();
         }
         case FIELD: {
-            // Now get value according to Content-Type and Charset
-            Charset localCharset = null;
-            Attribute charsetAttribute = currentFieldAttributes.get(HttpHeaderValues.CHARSET);
-            if (charsetAttribute != null) {
-                try {
-                    localCharset = Charset.forName(charsetAttribute.getValue());
-                } catch (IOException e) {
-                    throw new ErrorDataDecoderException(e);
-                } catch (UnsupportedCharsetException e) {
-                    throw new ErrorDataDecoderException(e);
-                }
-            }
-            Attribute nameAttribute = currentFieldAttributes.get(HttpHeaderValues.NAME);
-            if (currentAttribute == null) {
-                Attribute lengthAttribute = currentFieldAttributes
-                        .get(HttpHeaderNames.CONTENT_LENGTH);
-                long size;
-                try {
-                    size = lengthAttribute != null? Long.parseLong(lengthAttribute
-                            .getValue()) : 0L;
-                } catch (IOException e) {
-                    throw new ErrorDataDecoderException(e);
-                } catch (NumberFormatException ignored) {
-                    size = 0;
-                }
-                try {
-                    if (size > 0) {
-                        currentAttribute = factory.createAttribute(request,
-                                cleanString(nameAttribute.getValue()), size);
-                    } else {
-                        currentAttribute = factory.createAttribute(request,
-                                cleanString(nameAttribute.getValue()));
-                    }
-                } catch (NullPointerException e) {
-                    throw new ErrorDataDecoderException(e);
-                } catch (IllegalArgumentException e) {
-                    throw new ErrorDataDecoderException(e);
-                } catch (IOException e) {
-                    throw new ErrorDataDecoderException(e);
-                }
-                if (localCharset != null) {
-                    currentAttribute.setCharset(localCharset);
-                }
-            }
-            // load data
-            if (!loadDataMultipartOptimized(undecodedChunk, multipartDataBoundary, currentAttribute)) {
+            if (!loadPart(dataBoundaryMatcher)) {
                 // Delimiter is not found. Need more chunks.
-                return null;
+                return false;
             }
-            Attribute finalAttribute = currentAttribute;
-            currentAttribute = null;
-            clearCurrentFieldAttributes();
             // ready to load the next one
             currentStatus = MultiPartStatus.HEADERDELIMITER;
-            return finalAttribute;
+            return true;
         }
         case FILEUPLOAD: {
-            // eventually restart from existing FileUpload
-            return getFileUpload(multipartDataBoundary);
+            if (!loadPart(dataBoundaryMatcher)) {
+                // Delimiter is not found. Need more chunks.
+                return false;
+            }
+            // ready to load the next one
+            currentStatus = MultiPartStatus.HEADERDELIMITER;
+            return true;
         }
         case MIXEDDELIMITER: {
             // --AaB03x or --AaB03x--
-            // Note that currentFieldAttributes exists
-            return findMultipartDelimiter(multipartMixedBoundary, MultiPartStatus.MIXEDDISPOSITION,
+            // Note that mixedPartName exists
+            return findMultipartDelimiter(mixedBoundaryMatcher, MultiPartStatus.MIXEDDISPOSITION,
                     MultiPartStatus.HEADERDELIMITER);
         }
         case MIXEDDISPOSITION: {
             return findMultipartDisposition();
         }
         case MIXEDFILEUPLOAD: {
-            // eventually restart from existing FileUpload
-            return getFileUpload(multipartMixedBoundary);
+            if (!loadPart(mixedBoundaryMatcher)) {
+                // Delimiter is not found. Need more chunks.
+                return false;
+            }
+            // ready to load the next one
+            currentStatus = MultiPartStatus.MIXEDDELIMITER;
+            return true;
         }
         case PREEPILOGUE:
-            return null;
+            return false;
         case EPILOGUE:
-            return null;
+            return false;
         default:
             throw new ErrorDataDecoderException("Shouldn't reach here.");
         }
@@ -592,22 +676,15 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
 
     /**
      * Skip control Characters
-     *
-     * @throws NotEnoughDataDecoderException
      */
     private static void skipControlCharacters(Buffer undecodedChunk) {
-        try {
-            skipControlCharactersStandard(undecodedChunk);
-        } catch (IndexOutOfBoundsException e1) {
-            throw new NotEnoughDataDecoderException(e1);
+        if (undecodedChunk.readableBytes() == 0) {
+            return;
         }
-    }
-
-    private static void skipControlCharactersStandard(Buffer undecodedChunk) {
         ByteCursor cursor = undecodedChunk.openCursor();
         int processed = cursor.process(CTRLSPACE_PROCESSOR);
         if (processed > 0) {
-            undecodedChunk.readerOffset(undecodedChunk.readerOffset() + processed);
+            undecodedChunk.skipReadableBytes(processed);
         }
     }
 
@@ -615,194 +692,127 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
      * Find the next Multipart Delimiter
      *
      * @param delimiter
-     *            delimiter to find
+     *            matcher of the delimiter to find
      * @param dispositionStatus
      *            the next getStatus if the delimiter is a start
      * @param closeDelimiterStatus
      *            the next getStatus if the delimiter is a close delimiter
-     * @return the next InterfaceHttpData if any
-     * @throws ErrorDataDecoderException
+     * @return true if the delimiter was found, false if need more chunks
      */
-    private InterfaceHttpData findMultipartDelimiter(String delimiter, MultiPartStatus dispositionStatus,
+    private boolean findMultipartDelimiter(BoundaryMatcher delimiter, MultiPartStatus dispositionStatus,
             MultiPartStatus closeDelimiterStatus) {
         // --AaB03x or --AaB03x--
         int readerIndex = undecodedChunk.readerOffset();
-        try {
-            skipControlCharacters(undecodedChunk);
-        } catch (NotEnoughDataDecoderException ignored) {
-            undecodedChunk.readerOffset(readerIndex);
-            return null;
-        }
+        skipControlCharacters(undecodedChunk);
         skipOneLine();
-        String newline;
-        try {
-            newline = readDelimiterOptimized(undecodedChunk, delimiter, charset);
-        } catch (NotEnoughDataDecoderException ignored) {
-            undecodedChunk.readerOffset(readerIndex);
-            return null;
-        }
-        if (newline.equals(delimiter)) {
+        switch (readDelimiterOptimized(undecodedChunk, delimiter)) {
+        case DELIMITER_OPENING:
             currentStatus = dispositionStatus;
-            return decodeMultipart(dispositionStatus);
-        }
-        if (newline.equals(delimiter + "--")) {
+            return true;
+        case DELIMITER_CLOSING:
             // CLOSEDELIMITER or MIXED CLOSEDELIMITER found
             currentStatus = closeDelimiterStatus;
             if (currentStatus == MultiPartStatus.HEADERDELIMITER) {
                 // MIXEDCLOSEDELIMITER
                 // end of the Mixed part
-                clearCurrentFieldAttributes();
-                return decodeMultipart(MultiPartStatus.HEADERDELIMITER);
+                mixedPartName = null;
+            } else {
+                listener.onEpilogue();
             }
-            return null;
+            return true;
+        default:
+            undecodedChunk.readerOffset(readerIndex);
+            return false;
         }
-        undecodedChunk.readerOffset(readerIndex);
-        throw new ErrorDataDecoderException("No Multipart delimiter found");
     }
 
     /**
      * Find the next Disposition
      *
-     * @return the next InterfaceHttpData if any
+     * @return true if all the headers of the part were found, false if need more chunks
      * @throws ErrorDataDecoderException
      */
-    private InterfaceHttpData findMultipartDisposition() {
+    private boolean findMultipartDisposition() {
         int readerIndex = undecodedChunk.readerOffset();
-        if (currentStatus == MultiPartStatus.DISPOSITION) {
-            cleanMixedAttributes();
-            currentFieldAttributes = new TreeMap<CharSequence, Attribute>(CaseIgnoringComparator.INSTANCE);
-        }
+        // the headers are parsed again from the start if a line is not complete
+        final PartHeaders partHeaders = currentStatus == MultiPartStatus.DISPOSITION ?
+                new PartHeaders() : new PartHeaders(mixedPartName);
         // read many lines until empty line with newline found! Store all data
         while (!skipOneLine()) {
-            String newline;
-            try {
-                skipControlCharacters(undecodedChunk);
-                newline = readLineOptimized(undecodedChunk, charset);
-            } catch (NotEnoughDataDecoderException ignored) {
+            skipControlCharacters(undecodedChunk);
+            if (!headerParser.readLine(undecodedChunk)) {
                 undecodedChunk.readerOffset(readerIndex);
-                return null;
+                return false;
             }
-            String[] contents = splitMultipartHeader(newline);
-            if (HttpHeaderNames.CONTENT_DISPOSITION.contentEqualsIgnoreCase(contents[0])) {
+            final MultipartHeaderParser header = headerParser;
+            if (header.isHeader(HttpHeaderNames.CONTENT_DISPOSITION)) {
                 boolean checkSecondArg;
                 if (currentStatus == MultiPartStatus.DISPOSITION) {
-                    checkSecondArg = HttpHeaderValues.FORM_DATA.contentEqualsIgnoreCase(contents[1]);
+                    checkSecondArg = header.valueEqualsIgnoreCase(0, HttpHeaderValues.FORM_DATA);
                 } else {
-                    checkSecondArg = HttpHeaderValues.ATTACHMENT.contentEqualsIgnoreCase(contents[1])
-                            || HttpHeaderValues.FILE.contentEqualsIgnoreCase(contents[1]);
+                    checkSecondArg = header.valueEqualsIgnoreCase(0, HttpHeaderValues.ATTACHMENT)
+                            || header.valueEqualsIgnoreCase(0, HttpHeaderValues.FILE);
                 }
                 if (checkSecondArg) {
-                    // read next values and store them in the map as Attribute
-                    for (int i = 2; i < contents.length; i++) {
-                        String[] values = contents[i].split("=", 2);
-                        Attribute attribute;
-                        try {
-                            attribute = getContentDispositionAttribute(values);
-                        } catch (NullPointerException e) {
-                            throw new ErrorDataDecoderException(e);
-                        } catch (IllegalArgumentException e) {
-                            throw new ErrorDataDecoderException(e);
+                    // read next values and keep the ones used later
+                    for (int i = 1; i < header.valueCount(); i++) {
+                        if (!header.isParameter(i)) {
+                            throw new ErrorDataDecoderException("Invalid Content-Disposition parameter");
                         }
-                        putCurrentFieldAttribute(attribute.getName(), attribute);
+                        setContentDispositionParameter(header, i, partHeaders);
                     }
                 }
-            } else if (HttpHeaderNames.CONTENT_TRANSFER_ENCODING.contentEqualsIgnoreCase(contents[0])) {
-                Attribute attribute;
-                try {
-                    attribute = factory.createAttribute(request, HttpHeaderNames.CONTENT_TRANSFER_ENCODING.toString(),
-                            cleanString(contents[1]));
-                } catch (NullPointerException e) {
-                    throw new ErrorDataDecoderException(e);
-                } catch (IllegalArgumentException e) {
-                    throw new ErrorDataDecoderException(e);
-                }
-
-                putCurrentFieldAttribute(HttpHeaderNames.CONTENT_TRANSFER_ENCODING, attribute);
-            } else if (HttpHeaderNames.CONTENT_LENGTH.contentEqualsIgnoreCase(contents[0])) {
-                Attribute attribute;
-                try {
-                    attribute = factory.createAttribute(request, HttpHeaderNames.CONTENT_LENGTH.toString(),
-                            cleanString(contents[1]));
-                } catch (NullPointerException e) {
-                    throw new ErrorDataDecoderException(e);
-                } catch (IllegalArgumentException e) {
-                    throw new ErrorDataDecoderException(e);
-                }
-
-                putCurrentFieldAttribute(HttpHeaderNames.CONTENT_LENGTH, attribute);
-            } else if (HttpHeaderNames.CONTENT_TYPE.contentEqualsIgnoreCase(contents[0])) {
+            } else if (header.isHeader(HttpHeaderNames.CONTENT_TRANSFER_ENCODING)) {
+                partHeaders.setContentTransferEncoding(header.cleanValue(0));
+            } else if (header.isHeader(HttpHeaderNames.CONTENT_LENGTH)) {
+                partHeaders.setContentLength(header.cleanValue(0));
+            } else if (header.isHeader(HttpHeaderNames.CONTENT_TYPE)) {
                 // Take care of possible "multipart/mixed"
-                if (HttpHeaderValues.MULTIPART_MIXED.contentEqualsIgnoreCase(contents[1])) {
+                if (header.valueEqualsIgnoreCase(0, HttpHeaderValues.MULTIPART_MIXED)) {
                     if (currentStatus == MultiPartStatus.DISPOSITION) {
-                        String values = StringUtil.substringAfter(contents[2], '=');
-                        multipartMixedBoundary = "--" + values;
+                        if (header.valueCount() < 2 || !header.isParameter(1)) {
+                            throw new ErrorDataDecoderException("Mixed Multipart without boundary");
+                        }
+                        multipartMixedBoundary = "--" + header.parameterValue(1);
+                        mixedPartName = partHeaders.getName();
+                        mixedBoundaryMatcher = new BoundaryMatcher(multipartMixedBoundary, charset);
                         currentStatus = MultiPartStatus.MIXEDDELIMITER;
-                        return decodeMultipart(MultiPartStatus.MIXEDDELIMITER);
+                        return true;
                     } else {
                         throw new ErrorDataDecoderException("Mixed Multipart found in a previous Mixed Multipart");
                     }
                 } else {
-                    for (int i = 1; i < contents.length; i++) {
-                        final String charsetHeader = HttpHeaderValues.CHARSET.toString();
-                        if (contents[i].regionMatches(true, 0, charsetHeader, 0, charsetHeader.length())) {
-                            String values = StringUtil.substringAfter(contents[i], '=');
-                            Attribute attribute;
-                            try {
-                                attribute = factory.createAttribute(request, charsetHeader, cleanString(values));
-                            } catch (NullPointerException e) {
-                                throw new ErrorDataDecoderException(e);
-                            } catch (IllegalArgumentException e) {
-                                throw new ErrorDataDecoderException(e);
-                            }
-                            putCurrentFieldAttribute(HttpHeaderValues.CHARSET, attribute);
-                        } else if (contents[i].contains("=")) {
-                            String name = StringUtil.substringBefore(contents[i], '=');
-                            String values = StringUtil.substringAfter(contents[i], '=');
-                            Attribute attribute;
-                            try {
-                                attribute = factory.createAttribute(request, cleanString(name), values);
-                            } catch (NullPointerException e) {
-                                throw new ErrorDataDecoderException(e);
-                            } catch (IllegalArgumentException e) {
-                                throw new ErrorDataDecoderException(e);
-                            }
-                            putCurrentFieldAttribute(name, attribute);
-                        } else {
-                            Attribute attribute;
-                            try {
-                                attribute = factory.createAttribute(request,
-                                        cleanString(contents[0]), contents[i]);
-                            } catch (NullPointerException e) {
-                                throw new ErrorDataDecoderException(e);
-                            } catch (IllegalArgumentException e) {
-                                throw new ErrorDataDecoderException(e);
+                    for (int i = 0; i < header.valueCount(); i++) {
+                        if (header.valueStartsWithIgnoreCase(i, HttpHeaderValues.CHARSET)) {
+                            String value = header.cleanParameterValue(i);
+                            if (value == null) {
+                                throw new ErrorDataDecoderException("Invalid charset parameter");
                             }
-                            putCurrentFieldAttribute(attribute.getName(), attribute);
+                            partHeaders.setCharsetName(value);
+                        } else if (!header.isParameter(i)) {
+                            partHeaders.setContentType(header.value(i));
                         }
+                        // other parameters are not used
                     }
                 }
             }
         }
+        currentPartHeaders = partHeaders;
         // Is it a FileUpload
-        Attribute filenameAttribute = currentFieldAttributes.get(HttpHeaderValues.FILENAME);
         if (currentStatus == MultiPartStatus.DISPOSITION) {
-            if (filenameAttribute != null) {
+            if (currentPartHeaders.isFileUpload()) {
                 // FileUpload
                 currentStatus = MultiPartStatus.FILEUPLOAD;
-                // do not change the buffer position
-                return decodeMultipart(MultiPartStatus.FILEUPLOAD);
             } else {
                 // Field
                 currentStatus = MultiPartStatus.FIELD;
-                // do not change the buffer position
-                return decodeMultipart(MultiPartStatus.FIELD);
             }
+            return true;
         } else {
-            if (filenameAttribute != null) {
+            if (currentPartHeaders.isFileUpload()) {
                 // FileUpload
                 currentStatus = MultiPartStatus.MIXEDFILEUPLOAD;
-                // do not change the buffer position
-                return decodeMultipart(MultiPartStatus.MIXEDFILEUPLOAD);
+                return true;
             } else {
                 // Field is not supported in MIXED mode
                 throw new ErrorDataDecoderException("Filename not found");
@@ -810,145 +820,183 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
         }
     }
 
-    private void putCurrentFieldAttribute(CharSequence name, Attribute attribute) {
-        currentFieldAttributes.compute(attribute.getName(), (key, old) -> {
-            if (old != null) {
-                old.close();
-            }
-            return attribute;
-        });
-    }
-
-    private static final String FILENAME_ENCODED = HttpHeaderValues.FILENAME.toString() + '*';
-
-    private Attribute getContentDispositionAttribute(String... values) {
-        String name = cleanString(values[0]);
-        String value = values[1];
+    private static final AsciiString FILENAME_ENCODED = AsciiString.of(HttpHeaderValues.FILENAME + "*");
 
+    private static void setContentDispositionParameter(MultipartHeaderParser header, int index,
+                                                       PartHeaders partHeaders) {
         // Filename can be token, quoted or encoded. See https://tools.ietf.org/html/rfc5987
-        if (HttpHeaderValues.FILENAME.contentEquals(name)) {
+        if (header.isParameter(index, HttpHeaderValues.NAME)) {
+            partHeaders.setName(header.fieldName(index));
+        } else if (header.isParameter(index, HttpHeaderValues.FILENAME)) {
             // Value is quoted or token. Strip if quoted:
-            int last = value.length() - 1;
-            if (last > 0 &&
-              value.charAt(0) == HttpConstants.DOUBLE_QUOTE &&
-              value.charAt(last) == HttpConstants.DOUBLE_QUOTE) {
-                value = value.substring(1, last);
-            }
-        } else if (FILENAME_ENCODED.equals(name)) {
+            partHeaders.setFilename(header.unquotedParameterValue(index));
+        } else if (header.isParameter(index, FILENAME_ENCODED)) {
             try {
-                name = HttpHeaderValues.FILENAME.toString();
-                String[] split = cleanString(value).split("'", 3);
-                value = QueryStringDecoder.decodeComponent(split[2], Charset.forName(split[0]));
+                String[] split = header.cleanParameterValue(index).split("'", 3);
+                partHeaders.setFilename(QueryStringDecoder.decodeComponent(split[2], Charset.forName(split[0])));
             } catch (ArrayIndexOutOfBoundsException e) {
                  throw new ErrorDataDecoderException(e);
             } catch (UnsupportedCharsetException e) {
                 throw new ErrorDataDecoderException(e);
+            } catch (IllegalArgumentException e) {
+                throw new ErrorDataDecoderException(e);
             }
-        } else {
-            // otherwise we need to clean the value
-            value = cleanString(value);
         }
-        return factory.createAttribute(request, name, value);
+        // other parameters are not used
     }
 
     /**
-     * Get the FileUpload (new one or current one)
+     * Give as much content as possible of the current part to the listener, notifying it first of the
+     * beginning of the part if not yet done
      *
      * @param delimiter
-     *            the delimiter to use
-     * @return the InterfaceHttpData if any
+     *            the matcher of the delimiter ending the part
+     * @return true if the part is fully decoded, false if need more chunks
      * @throws ErrorDataDecoderException
      */
-    protected InterfaceHttpData getFileUpload(String delimiter) {
-        // eventually restart from existing FileUpload
-        // Now get value according to Content-Type and Charset
-        Attribute encoding = currentFieldAttributes.get(HttpHeaderNames.CONTENT_TRANSFER_ENCODING);
-        Charset localCharset = charset;
-        // Default
-        TransferEncodingMechanism mechanism = TransferEncodingMechanism.BIT7;
-        if (encoding != null) {
-            String code;
-            try {
-                code = encoding.getValue().toLowerCase();
-            } catch (IOException e) {
-                throw new ErrorDataDecoderException(e);
+    private boolean loadPart(BoundaryMatcher delimiter) {
+        try {
+            if (!currentPartBegun) {
+                currentPartBegun = true;
+                currentPartLength = 0;
+                currentPartSkipped = partFilter != null && !partFilter.accept(currentPartHeaders);
+                currentPartMaxSize = partFilter != null && !currentPartSkipped ?
+                        partFilter.maxSize(currentPartHeaders) : -1;
+                if (!currentPartSkipped) {
+                    listener.onPartBegin(currentPartHeaders);
+                }
             }
-            if (code.equals(HttpPostBodyUtil.TransferEncodingMechanism.BIT7.value())) {
-                localCharset = StandardCharsets.US_ASCII;
-            } else if (code.equals(HttpPostBodyUtil.TransferEncodingMechanism.BIT8.value())) {
-                localCharset = StandardCharsets.ISO_8859_1;
-                mechanism = TransferEncodingMechanism.BIT8;
-            } else if (code.equals(HttpPostBodyUtil.TransferEncodingMechanism.BINARY.value())) {
-                // no real charset, so let the default
-                mechanism = TransferEncodingMechanism.BINARY;
-            } else {
-                throw new ErrorDataDecoderException("TransferEncoding Unknown: " + code);
+            if (!loadDataMultipartOptimized(delimiter)) {
+                return false;
             }
-        }
-        Attribute charsetAttribute = currentFieldAttributes.get(HttpHeaderValues.CHARSET);
-        if (charsetAttribute != null) {
-            try {
-                localCharset = Charset.forName(charsetAttribute.getValue());
-            } catch (IOException e) {
-                throw new ErrorDataDecoderException(e);
-            } catch (UnsupportedCharsetException e) {
-                throw new ErrorDataDecoderException(e);
+            currentPartBegun = false;
+            currentPartHeaders = null;
+            if (!currentPartSkipped) {
+                listener.onPartEnd();
             }
+        } catch (IOException e) {
+            ErrorDataDecoderException error = new ErrorDataDecoderException(e);
+            abortPart(error);
+            throw error;
+        } catch (ErrorDataDecoderException e) {
+            abortPart(e);
+            throw e;
         }
-        if (currentFileUpload == null) {
-            Attribute filenameAttribute = currentFieldAttributes.get(HttpHeaderValues.FILENAME);
-            Attribute nameAttribute = currentFieldAttributes.get(HttpHeaderValues.NAME);
-            Attribute contentTypeAttribute = currentFieldAttributes.get(HttpHeaderNames.CONTENT_TYPE);
-            Attribute lengthAttribute = currentFieldAttributes.get(HttpHeaderNames.CONTENT_LENGTH);
-            long size;
-            try {
-                size = lengthAttribute != null ? Long.parseLong(lengthAttribute.getValue()) : 0L;
-            } catch (IOException e) {
-                throw new ErrorDataDecoderException(e);
-            } catch (NumberFormatException ignored) {
-                size = 0;
-            }
+        return true;
+    }
+
+    /**
+     * Notify the listener that the current part, if any, will never be completed
+     *
+     * @param cause the error which stopped the decoding, or {@code null} if the decoder is destroyed
+     */
+    private void abortPart(Throwable cause) {
+        if (!currentPartBegun) {
+            return;
+        }
+        currentPartBegun = false;
+        currentPartHeaders = null;
+        if (!currentPartSkipped) {
+            listener.onPartAborted(cause);
+        }
+    }
+
+    /**
+     * Default {@link MultipartListener}, creating an {@link Attribute} or a {@link FileUpload}
+     * from the {@link HttpDataFactory} for each part
+     */
+    private final class HttpDataListener implements MultipartListener {
+        /**
+         * The current Attribute or FileUpload that is currently in decode process
+         */
+        private HttpData currentData;
+
+        @Override
+        public void onPartBegin(PartHeaders headers) throws IOException {
             try {
-                String contentType;
-                if (contentTypeAttribute != null) {
-                    contentType = contentTypeAttribute.getValue();
-                } else {
-                    contentType = HttpPostBodyUtil.DEFAULT_BINARY_CONTENT_TYPE;
-                }
-                currentFileUpload = factory.createFileUpload(request,
-                        cleanString(nameAttribute.getValue()), cleanString(filenameAttribute.getValue()),
-                        contentType, mechanism.value(), localCharset,
-                        size);
+                currentData = headers.isFileUpload() ? createFileUpload(headers) : createAttribute(headers);
             } catch (NullPointerException e) {
                 throw new ErrorDataDecoderException(e);
             } catch (IllegalArgumentException e) {
                 throw new ErrorDataDecoderException(e);
-            } catch (IOException e) {
-                throw new ErrorDataDecoderException(e);
             }
         }
-        // load data as much as possible
-        if (!loadDataMultipartOptimized(undecodedChunk, delimiter, currentFileUpload)) {
-            // Delimiter is not found. Need more chunks.
-            return null;
+
+        @Override
+        public void onPartContent(Buffer content, boolean last) throws IOException {
+            currentData.addContent(content, last);
         }
-        if (currentFileUpload.isCompleted()) {
-            // ready to load the next one
-            if (currentStatus == MultiPartStatus.FILEUPLOAD) {
-                currentStatus = MultiPartStatus.HEADERDELIMITER;
-               clearCurrentFieldAttributes();
+
+        @Override
+        public void onPartEnd() {
+            HttpData data = currentData;
+            currentData = null;
+            addHttpData(data);
+        }
+
+        @Override
+        public void onPartAborted(Throwable cause) {
+            HttpData data = currentData;
+            currentData = null;
+            if (data != null && data.isAccessible()) {
+                data.close();
+            }
+        }
+
+        @Override
+        public void onEpilogue() {
+            // Nothing to do
+        }
+
+        private Attribute createAttribute(PartHeaders headers) throws IOException {
+            // Now get value according to Content-Type and Charset
+            Charset localCharset = headers.getCharset();
+            long size = headers.getContentLength();
+            Attribute attribute;
+            if (size > 0) {
+                attribute = factory.createAttribute(request, cleanString(headers.getName()), size);
             } else {
-                currentStatus = MultiPartStatus.MIXEDDELIMITER;
-                cleanMixedAttributes();
+                attribute = factory.createAttribute(request, cleanString(headers.getName()));
+            }
+            if (localCharset != null) {
+                attribute.setCharset(localCharset);
             }
-            FileUpload fileUpload = currentFileUpload;
-            currentFileUpload = null;
-            return fileUpload;
+            return attribute;
+        }
+
+        private FileUpload createFileUpload(PartHeaders headers) {
+            // Now get value according to Content-Type and Charset
+            Charset localCharset = charset;
+            // Default
+            TransferEncodingMechanism mechanism = TransferEncodingMechanism.BIT7;
+            String encoding = headers.getContentTransferEncoding();
+            if (encoding != null) {
+                String code = encoding.toLowerCase();
+                if (code.equals(TransferEncodingMechanism.BIT7.value())) {
+                    localCharset = StandardCharsets.US_ASCII;
+                } else if (code.equals(TransferEncodingMechanism.BIT8.value())) {
+                    localCharset = StandardCharsets.ISO_8859_1;
+                    mechanism = TransferEncodingMechanism.BIT8;
+                } else if (code.equals(TransferEncodingMechanism.BINARY.value())) {
+                    // no real charset, so let the default
+                    mechanism = TransferEncodingMechanism.BINARY;
+                } else {
+                    throw new ErrorDataDecoderException("TransferEncoding Unknown: " + code);
+                }
+            }
+            Charset partCharset = headers.getCharset();
+            if (partCharset != null) {
+                localCharset = partCharset;
+            }
+            String contentType = headers.getContentType();
+            if (contentType == null) {
+                contentType = HttpPostBodyUtil.DEFAULT_BINARY_CONTENT_TYPE;
+            }
+            return factory.createFileUpload(request,
+                    cleanString(headers.getName()), cleanString(headers.getFilename()),
+                    contentType, mechanism.value(), localCharset,
+                    Math.max(0, headers.getContentLength()));
         }
-        // do not change the buffer position
-        // since some can be already saved into FileUpload
-        // So do not change the currentStatus
-        return null;
     }
 
     /**
@@ -967,6 +1015,9 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
             }
         }
 
+        // Release the part in decode process if any
+        abortPart(null);
+
         destroyed = true;
 
         if (undecodedChunk != null) {
@@ -976,7 +1027,7 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
             undecodedChunk = null;
         }
 
-        clearCurrentFieldAttributes();
+        currentPartHeaders = null;
     }
 
     /**
@@ -999,184 +1050,71 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
         factory.removeHttpDataFromClean(request, data);
     }
 
-    /**
-     * Remove all Attributes that should be cleaned between two FileUpload in
-     * Mixed mode
-     */
-    @SuppressWarnings("EmptyTryBlock")
-    private void cleanMixedAttributes() {
-        if (currentFieldAttributes != null) {
-            try (Attribute charset = currentFieldAttributes.remove(HttpHeaderValues.CHARSET);
-                 Attribute clen = currentFieldAttributes.remove(HttpHeaderNames.CONTENT_LENGTH);
-                 Attribute transferEncoding = currentFieldAttributes.remove(HttpHeaderNames.CONTENT_TRANSFER_ENCODING);
-                 Attribute ctype = currentFieldAttributes.remove(HttpHeaderNames.CONTENT_TYPE);
-                 Attribute fname = currentFieldAttributes.remove(HttpHeaderValues.FILENAME)) {
-            }
-        }
-    }
-
-    /**
-     * Clear all attributes from the currentFieldAttributes, and reset the map to null.
-     * Make sure any attributes are properly closed.
-     */
-    private void clearCurrentFieldAttributes() {
-        if (currentFieldAttributes != null) {
-            currentFieldAttributes.forEach((charSequence, attribute) -> {
-                if (attribute.isAccessible()) {
-                    attribute.close();
-                }
-            });
-            currentFieldAttributes = null;
-        }
-    }
-
-    /**
-     * Read one line up to the CRLF or LF
-     *
-     * @return the String from one line
-     * @throws NotEnoughDataDecoderException
-     *             Need more chunks and reset the {@code readerIndex} to the previous
-     *             value
-     */
-    private static String readLineOptimized(Buffer undecodedChunk, Charset charset) {
-        int readerIndex = undecodedChunk.readerOffset();
-        try {
-            if (undecodedChunk.readableBytes() > 0) {
-                int posLfOrCrLf = HttpPostBodyUtil.findLineBreak(undecodedChunk, undecodedChunk.readerOffset());
-                if (posLfOrCrLf <= 0) {
-                    throw new NotEnoughDataDecoderException();
-                }
-
-                CharSequence lineCharSeq = undecodedChunk.readCharSequence(posLfOrCrLf, charset);
-                byte nextByte = undecodedChunk.readByte();
-                if (nextByte == HttpConstants.CR) {
-                    // force read next byte since LF is the following one
-                    undecodedChunk.readByte();
-                }
-                return lineCharSeq.toString();
-            }
-        } catch (IndexOutOfBoundsException e) {
-            undecodedChunk.readerOffset(readerIndex);
-            throw new NotEnoughDataDecoderException(e);
-        }
-        undecodedChunk.readerOffset(readerIndex);
-        throw new NotEnoughDataDecoderException();
-    }
-
     /**
      * Read one line up to --delimiter or --delimiter-- and if existing the CRLF
-     * or LF Read one line up to --delimiter or --delimiter-- and if existing
-     * the CRLF or LF. Note that CRLF or LF are mandatory for opening delimiter
+     * or LF. Note that CRLF or LF are mandatory for opening delimiter
      * (--delimiter) but not for closing delimiter (--delimiter--) since some
      * clients does not include CRLF in this case.
      *
      * @param delimiter
-     *            of the form --string, such that '--' is already included
-     * @return the String from one line as the delimiter searched (opening or
-     *         closing)
-     * @throws NotEnoughDataDecoderException
-     *             Need more chunks and reset the {@code readerIndex} to the previous
-     *             value
+     *            the matcher of the delimiter of the form --string, such that '--' is already included
+     * @return {@link #DELIMITER_OPENING} or {@link #DELIMITER_CLOSING} according to the delimiter found,
+     *         or {@link #DELIMITER_NOT_ENOUGH_DATA} if need more chunks, in which case the {@code readerIndex}
+     *         is left unchanged
      */
-    private static String readDelimiterOptimized(Buffer undecodedChunk, String delimiter, Charset charset) {
+    private static int readDelimiterOptimized(Buffer undecodedChunk, BoundaryMatcher delimiter) {
         final int readerIndex = undecodedChunk.readerOffset();
-        final byte[] bdelimiter = delimiter.getBytes(charset);
-        final int delimiterLength = bdelimiter.length;
-        try {
-            int delimiterPos = HttpPostBodyUtil.findDelimiter(undecodedChunk, readerIndex, bdelimiter, false);
-            if (delimiterPos < 0) {
-                // delimiter not found so break here !
-                undecodedChunk.readerOffset(readerIndex);
-                throw new NotEnoughDataDecoderException();
-            }
-            StringBuilder sb = new StringBuilder(delimiter);
-            undecodedChunk.readerOffset(readerIndex + delimiterPos + delimiterLength);
-            // Now check if either opening delimiter or closing delimiter
-            if (undecodedChunk.readableBytes() > 0) {
-                byte nextByte = undecodedChunk.readByte();
-                // first check for opening delimiter
-                if (nextByte == HttpConstants.CR) {
-                    nextByte = undecodedChunk.readByte();
-                    if (nextByte == HttpConstants.LF) {
-                        return sb.toString();
-                    } else {
-                        // error since CR must be followed by LF
-                        // delimiter not found so break here !
-                        undecodedChunk.readerOffset(readerIndex);
-                        throw new NotEnoughDataDecoderException();
-                    }
-                } else if (nextByte == HttpConstants.LF) {
-                    return sb.toString();
-                } else if (nextByte == '-') {
-                    sb.append('-');
-                    // second check for closing delimiter
-                    nextByte = undecodedChunk.readByte();
-                    if (nextByte == '-') {
-                        sb.append('-');
-                        // now try to find if CRLF or LF there
-                        if (undecodedChunk.readableBytes() > 0) {
-                            nextByte = undecodedChunk.readByte();
-                            if (nextByte == HttpConstants.CR) {
-                                nextByte = undecodedChunk.readByte();
-                                if (nextByte == HttpConstants.LF) {
-                                    return sb.toString();
-                                } else {
-                                    // error CR without LF
-                                    // delimiter not found so break here !
-                                    undecodedChunk.readerOffset(readerIndex);
-                                    throw new NotEnoughDataDecoderException();
-                                }
-                            } else if (nextByte == HttpConstants.LF) {
-                                return sb.toString();
-                            } else {
-                                // No CRLF but ok however (Adobe Flash uploader)
-                                // minus 1 since we read one char ahead but
-                                // should not
-                                undecodedChunk.readerOffset(undecodedChunk.readerOffset() - 1);
-                                return sb.toString();
-                            }
-                        }
-                        // FIXME what do we do here?
-                        // either considering it is fine, either waiting for
-                        // more data to come?
-                        // lets try considering it is fine...
-                        return sb.toString();
-                    }
-                    // only one '-' => not enough
-                    // whatever now => error since incomplete
-                }
+        final int writerIndex = undecodedChunk.writerOffset();
+        int delimiterPos = delimiter.findDelimiter(undecodedChunk, readerIndex, false);
+        if (delimiterPos < 0) {
+            // delimiter not found so break here !
+            return DELIMITER_NOT_ENOUGH_DATA;
+        }
+        int index = readerIndex + delimiterPos + delimiter.length();
+        // Now check if either opening delimiter or closing delimiter
+        if (index == writerIndex) {
+            return DELIMITER_NOT_ENOUGH_DATA;
+        }
+        byte nextByte = undecodedChunk.getByte(index++);
+        // first check for opening delimiter
+        if (nextByte == HttpConstants.CR) {
+            // CR must be followed by LF
+            if (index == writerIndex || undecodedChunk.getByte(index) != HttpConstants.LF) {
+                return DELIMITER_NOT_ENOUGH_DATA;
             }
-        } catch (IndexOutOfBoundsException e) {
-            undecodedChunk.readerOffset(readerIndex);
-            throw new NotEnoughDataDecoderException(e);
+            undecodedChunk.readerOffset(index + 1);
+            return DELIMITER_OPENING;
         }
-        undecodedChunk.readerOffset(readerIndex);
-        throw new NotEnoughDataDecoderException();
-    }
-
-    /**
-     * Rewrite buffer in order to skip lengthToSkip bytes from current readerIndex,
-     * such that any readable bytes available after readerIndex + lengthToSkip (so before writerIndex)
-     * are moved at readerIndex position,
-     * therefore decreasing writerIndex of lengthToSkip at the end of the process.
-     *
-     * @param buffer the buffer to rewrite from current readerIndex
-     * @param lengthToSkip the size to skip from readerIndex
-     */
-    private static void rewriteCurrentBuffer(Buffer buffer, int lengthToSkip) {
-        if (lengthToSkip == 0) {
-            return;
+        if (nextByte == HttpConstants.LF) {
+            undecodedChunk.readerOffset(index);
+            return DELIMITER_OPENING;
         }
-        final int readerIndex = buffer.readerOffset();
-        final int readableBytes = buffer.readableBytes();
-        if (readableBytes == lengthToSkip) {
-            buffer.readerOffset(readerIndex);
-            buffer.writerOffset(readerIndex);
-            return;
+        // second check for closing delimiter
+        if (nextByte != '-' || index == writerIndex || undecodedChunk.getByte(index++) != '-') {
+            // only one '-' => not enough
+            // whatever now => error since incomplete
+            return DELIMITER_NOT_ENOUGH_DATA;
+        }
+        // now try to find if CRLF or LF there
+        if (index < writerIndex) {
+            nextByte = undecodedChunk.getByte(index);
+            if (nextByte == HttpConstants.CR) {
+                // CR must be followed by LF
+                if (index + 1 == writerIndex || undecodedChunk.getByte(index + 1) != HttpConstants.LF) {
+                    return DELIMITER_NOT_ENOUGH_DATA;
+                }
+                index += 2;
+            } else if (nextByte == HttpConstants.LF) {
+                index++;
+            }
+            // else no CRLF but ok however (Adobe Flash uploader)
         }
-        buffer.copyInto(readerIndex + lengthToSkip, buffer, readerIndex, readableBytes - lengthToSkip);
-        buffer.readerOffset(readerIndex);
-        buffer.writerOffset(readerIndex + readableBytes - lengthToSkip);
+        // FIXME if nothing follows, what do we do here?
+        // either considering it is fine, either waiting for
+        // more data to come?
+        // lets try considering it is fine...
+        undecodedChunk.readerOffset(index);
+        return DELIMITER_CLOSING;
     }
 
     /**
@@ -1185,73 +1123,52 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
      * @return {@code true} if the last chunk is loaded (boundary delimiter found), {@code false} if need more chunks
      * @throws ErrorDataDecoderException
      */
-    private static boolean loadDataMultipartOptimized(Buffer undecodedChunk, String delimiter, HttpData httpData) {
+    private boolean loadDataMultipartOptimized(BoundaryMatcher delimiter) throws IOException {
         if (undecodedChunk.readableBytes() == 0) {
             return false;
         }
         final int startReaderIndex = undecodedChunk.readerOffset();
-        final byte[] bdelimiter = delimiter.getBytes(httpData.getCharset());
-        int posDelimiter = HttpPostBodyUtil.findDelimiter(undecodedChunk, startReaderIndex, bdelimiter, true);
+        int posDelimiter = delimiter.findDelimiterLine(undecodedChunk);
         if (posDelimiter < 0) {
-            // Not found but however perhaps because incomplete so search LF or CRLF from the end.
-            // Possible last bytes contain partially delimiter
-            // (delimiter is possibly partially there, at least 1 missing byte),
-            // therefore searching last delimiter.length +1 (+1 for CRLF instead of LF)
-            int readableBytes = undecodedChunk.readableBytes();
-            int lastPosition = readableBytes - bdelimiter.length - 1;
-            if (lastPosition < 0) {
-                // Not enough bytes, but at most delimiter.length bytes available so can still try to find CRLF there
-                lastPosition = 0;
-            }
-            posDelimiter = HttpPostBodyUtil.findLastLineBreak(undecodedChunk, startReaderIndex + lastPosition);
-            // No LineBreak, however CR can be at the end of the buffer, LF not yet there (issue #11668)
-            // Check if last CR (if any) shall not be in the content (definedLength vs actual length + buffer - 1)
-            if (posDelimiter < 0 &&
-                httpData.definedLength() == httpData.length() + readableBytes - 1 &&
-                undecodedChunk.getByte(readableBytes + startReaderIndex - 1) == HttpConstants.CR) {
-                // Last CR shall precede a future LF
-                lastPosition = 0;
-                posDelimiter = readableBytes - 1;
-            }
-            if (posDelimiter < 0) {
-                // not found so this chunk can be fully added
-                Buffer content = undecodedChunk.copy();
-                try {
-                    httpData.addContent(content, false);
-                } catch (IOException e) {
-                    throw new ErrorDataDecoderException(e);
-                }
-                undecodedChunk.readerOffset(startReaderIndex);
-                undecodedChunk.writerOffset(startReaderIndex);
-                return false;
-            }
-            // posDelimiter is not from startReaderIndex but from startReaderIndex + lastPosition
-            posDelimiter += lastPosition;
+            // Not found but however perhaps because incomplete: the matcher keeps the last bytes
+            // which could be the beginning of the delimiter (including LF or CRLF)
+            posDelimiter = undecodedChunk.readableBytes() - delimiter.retainedBytes();
             if (posDelimiter == 0) {
                 // Nothing to add
                 return false;
             }
-            // Not fully but still some bytes to provide: httpData is not yet finished since delimiter not found
-            Buffer content = undecodedChunk.copy(startReaderIndex, posDelimiter);
-            try {
-                httpData.addContent(content, false);
-            } catch (IOException e) {
-                throw new ErrorDataDecoderException(e);
-            }
-            rewriteCurrentBuffer(undecodedChunk, posDelimiter);
+            // Not fully but still some bytes to provide: the part is not yet finished since delimiter not found
+            // The content is split out of the undecoded chunk, so given to the listener without any copy
+            partContent(posDelimiter, false);
             return false;
         }
-        // Delimiter found at posDelimiter, including LF or CRLF, so httpData has its last chunk
-        Buffer content = undecodedChunk.copy(startReaderIndex, posDelimiter);
-        try {
-            httpData.addContent(content, true);
-        } catch (IOException e) {
-            throw new ErrorDataDecoderException(e);
+        // CR before the LF shall be in the content if the defined length says so (issue #11668)
+        if (undecodedChunk.getByte(startReaderIndex + posDelimiter) == HttpConstants.CR &&
+            currentPartHeaders.getContentLength() == currentPartLength + posDelimiter + 1) {
+            posDelimiter++;
         }
-        rewriteCurrentBuffer(undecodedChunk, posDelimiter);
+        // Delimiter found at posDelimiter, including LF or CRLF, so the part has its last chunk
+        partContent(posDelimiter, true);
         return true;
     }
 
+    /**
+     * Give the next bytes of the undecoded chunk to the listener as content of the current part,
+     * or skip them if the part is rejected by the filter
+     */
+    private void partContent(int length, boolean last) throws IOException {
+        currentPartLength += length;
+        if (currentPartSkipped) {
+            undecodedChunk.skipReadableBytes(length);
+            return;
+        }
+        if (currentPartMaxSize >= 0 && currentPartLength > currentPartMaxSize) {
+            throw new ErrorDataDecoderException("Part " + currentPartHeaders.getName() +
+                    " exceeds the maximum size of " + currentPartMaxSize + " bytes");
+        }
+        listener.onPartContent(undecodedChunk.readSplit(length), last);
+    }
+
     /**
      * Clean the String from any unallowed character
      *
@@ -1259,6 +1176,10 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
      */
     private static String cleanString(String field) {
         int size = field.length();
+        if (isClean(field)) {
+            // keeps the interned names
+            return field;
+        }
         StringBuilder sb = new StringBuilder(size);
         for (int i = 0; i < size; i++) {
             char nextChar = field.charAt(i);
@@ -1281,6 +1202,30 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
         return sb.toString().trim();
     }
 
+    /**
+     * @return true if {@link #cleanString(String)} would return the same String
+     */
+    private static boolean isClean(String field) {
+        int size = field.length();
+        if (size > 0 && (field.charAt(0) <= HttpConstants.SP_CHAR || field.charAt(size - 1) <= HttpConstants.SP_CHAR)) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            switch (field.charAt(i)) {
+            case HttpConstants.COLON:
+            case HttpConstants.COMMA:
+            case HttpConstants.EQUALS:
+            case HttpConstants.SEMICOLON:
+            case HttpConstants.HT:
+            case HttpConstants.DOUBLE_QUOTE:
+                return false;
+            default:
+                break;
+            }
+        }
+        return true;
+    }
+
     /**
      * Skip one empty line
      *
@@ -1310,86 +1255,6 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
         return false;
     }
 
-    /**
-     * Split one header in Multipart
-     *
-     * @return an array of String where rank 0 is the name of the header,
-     *         follows by several values that were separated by ';' or ','
-     */
-    private static String[] splitMultipartHeader(String sb) {
-        ArrayList<String> headers = new ArrayList<String>(1);
-        int nameStart;
-        int nameEnd;
-        int colonEnd;
-        int valueStart;
-        int valueEnd;
-        nameStart = HttpPostBodyUtil.findNonWhitespace(sb, 0);
-        for (nameEnd = nameStart; nameEnd < sb.length(); nameEnd++) {
-            char ch = sb.charAt(nameEnd);
-            if (ch == ':' || Character.isWhitespace(ch)) {
-                break;
-            }
-        }
-        for (colonEnd = nameEnd; colonEnd < sb.length(); colonEnd++) {
-            if (sb.charAt(colonEnd) == ':') {
-                colonEnd++;
-                break;
-            }
-        }
-        valueStart = HttpPostBodyUtil.findNonWhitespace(sb, colonEnd);
-        valueEnd = HttpPostBodyUtil.findEndOfString(sb);
-        headers.add(sb.substring(nameStart, nameEnd));
-        String svalue = (valueStart >= valueEnd) ? StringUtil.EMPTY_STRING : sb.substring(valueStart, valueEnd);
-        String[] values;
-        if (svalue.indexOf(';') >= 0) {
-            values = splitMultipartHeaderValues(svalue);
-        } else {
-            values = svalue.split(",");
-        }
-        for (String value : values) {
-            headers.add(value.trim());
-        }
-        String[] array = new String[headers.size()];
-        for (int i = 0; i < headers.size(); i++) {
-            array[i] = headers.get(i);
-        }
-        return array;
-    }
-
-    /**
-     * Split one header value in Multipart
-     * @return an array of String where values that were separated by ';' or ','
-     */
-    private static String[] splitMultipartHeaderValues(String svalue) {
-        List<String> values = new ArrayList<>(1);
-        boolean inQuote = false;
-        boolean escapeNext = false;
-        int start = 0;
-        for (int i = 0; i < svalue.length(); i++) {
-            char c = svalue.charAt(i);
-            if (inQuote) {
-                if (escapeNext) {
-                    escapeNext = false;
-                } else {
-                    if (c == '\\') {
-                        escapeNext = true;
-                    } else if (c == '"') {
-                        inQuote = false;
-                    }
-                }
-            } else {
-                if (c == '"') {
-                    inQuote = true;
-                } else if (c == ';') {
-                    values.add(svalue.substring(start, i));
-                    start = i + 1;
-                }
-            }
-        }
-        values.add(svalue.substring(start));
-        return values.toArray(new String[0]);
-    }
-
     /**
      * This method is package private intentionally in order to allow during tests
      * to access to the amount of memory allocated (capacity) within the private
@@ -196,11 +196,19 @@ public class HttpPostRequestDecoder implements InterfaceHttpPostRequestDecoder {
         return decoder.isMultipart();
     }
 
+    /**
+     * @deprecated No-op, see {@link InterfaceHttpPostRequestDecoder#setDiscardThreshold(int)}.
+     */
+    @Deprecated
     @Override
     public void setDiscardThreshold(int discardThreshold) {
         decoder.setDiscardThreshold(discardThreshold);
     }
 
+    /**
+     * @deprecated The threshold is not used, see {@link InterfaceHttpPostRequestDecoder#setDiscardThreshold(int)}.
+     */
+    @Deprecated
     @Override
     public int getDiscardThreshold() {
         return decoder.getDiscardThreshold();
@@ -236,6 +244,16 @@ public class HttpPostRequestDecoder implements InterfaceHttpPostRequestDecoder {
         return decoder.next();
     }
 
+    @Override
+    public InterfaceHttpData poll() {
+        return decoder.poll();
+    }
+
+    @Override
+    public boolean isEndOfData() {
+        return decoder.isEndOfData();
+    }
+
     @Override
     public InterfaceHttpData currentPartialHttpData() {
         return decoder.currentPartialHttpData();
@@ -45,7 +45,6 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -904,7 +903,7 @@ public class HttpPostRequestEncoder implements ChunkedInput<HttpContent<?>> {
         if (currentBuffer == null) {
             currentBuffer = buffer;
         } else {
-            currentBuffer = DefaultBufferAllocators.onHeapAllocator().compose(Arrays.asList(currentBuffer.send(), buffer.send()));
+            currentBuffer = Helpers.toComposite(currentBuffer, buffer);
         }
         if (currentBuffer.readableBytes() < HttpPostBodyUtil.chunkSize) {
             currentData = null;
@@ -938,9 +937,9 @@ public class HttpPostRequestEncoder implements ChunkedInput<HttpContent<?>> {
             isKey = false;
             Buffer equal = Helpers.copiedBuffer("=", charset);
             if (currentBuffer == null) {
-                currentBuffer = DefaultBufferAllocators.onHeapAllocator().compose(Arrays.asList(buffer.send(), equal.send()));
+                currentBuffer = Helpers.toComposite(buffer, equal);
             } else {
-                currentBuffer = DefaultBufferAllocators.onHeapAllocator().compose(Arrays.asList(currentBuffer.send(), buffer.send(), equal.send()));
+                currentBuffer = Helpers.toComposite(currentBuffer, buffer, equal);
             }
             // continue
             size -= buffer.readableBytes() + 1;
@@ -976,7 +975,7 @@ public class HttpPostRequestEncoder implements ChunkedInput<HttpContent<?>> {
                 }
             } else {
                 if (delimiter != null) {
-                    currentBuffer = DefaultBufferAllocators.onHeapAllocator().compose(Arrays.asList(currentBuffer.send(), delimiter.send()));
+                    currentBuffer = Helpers.toComposite(currentBuffer, delimiter);
                 }
             }
             if (currentBuffer.readableBytes() >= HttpPostBodyUtil.chunkSize) {
@@ -989,15 +988,15 @@ public class HttpPostRequestEncoder implements ChunkedInput<HttpContent<?>> {
         // Put it all together: name=value&
         if (currentBuffer == null) {
             if (delimiter != null) {
-                currentBuffer = DefaultBufferAllocators.onHeapAllocator().compose(Arrays.asList(buffer.send(), delimiter.send()));
+                currentBuffer = Helpers.toComposite(buffer, delimiter);
             } else {
                 currentBuffer = buffer;
             }
         } else {
             if (delimiter != null) {
-                currentBuffer = DefaultBufferAllocators.onHeapAllocator().compose(Arrays.asList(currentBuffer.send(), buffer.send(), delimiter.send()));
+                currentBuffer = Helpers.toComposite(currentBuffer, buffer, delimiter);
             } else {
-                currentBuffer = DefaultBufferAllocators.onHeapAllocator().compose(Arrays.asList(currentBuffer.send(), buffer.send()));
+                currentBuffer = Helpers.toComposite(currentBuffer, buffer);
             }
         }
 
@@ -21,12 +21,12 @@ import io.netty.contrib.handler.codec.http.multipart.HttpPostRequestDecoder.Mult
 import io.netty.contrib.handler.codec.http.multipart.HttpPostRequestDecoder.NotEnoughDataDecoderException;
 import io.netty5.buffer.Buffer;
 import io.netty5.buffer.ByteCursor;
+import io.netty5.buffer.CompositeBuffer;
 import io.netty5.buffer.DefaultBufferAllocators;
 import io.netty5.handler.codec.http.HttpConstants;
 import io.netty5.handler.codec.http.HttpContent;
 import io.netty5.handler.codec.http.HttpRequest;
 import io.netty5.handler.codec.http.LastHttpContent;
-import io.netty5.handler.codec.http.QueryStringDecoder;
 import io.netty5.util.ByteProcessor;
 import io.netty5.util.internal.PlatformDependent;
 import io.netty5.util.internal.StringUtil;
@@ -81,9 +81,9 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
             CaseIgnoringComparator.INSTANCE);
 
     /**
-     * The current channelBuffer
+     * The received but not yet decoded segments
      */
-    private Buffer undecodedChunk;
+    private CompositeBuffer undecodedChunk;
 
     /**
      * Body HttpDatas current position
@@ -104,6 +104,21 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
 
     private int discardThreshold = HttpPostRequestDecoder.DEFAULT_DISCARD_THRESHOLD;
 
+    /**
+     * Table of the decoded parameters, or null to create an Attribute per parameter
+     */
+    private final FormParameters parameters;
+
+    /**
+     * Visitor notified of the decoded parameters
+     */
+    private final FormParamVisitor visitor;
+
+    /**
+     * True once the visitor was notified of a key, until the last content of its value
+     */
+    private boolean valuePending;
+
     /**
      *
      * @param request
@@ -149,9 +164,83 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
      *             errors
      */
     public HttpPostStandardRequestDecoder(HttpDataFactory factory, HttpRequest request, Charset charset) {
+        this(factory, request, charset, null, null);
+    }
+
+    /**
+     * Create a decoder which, if {@code parameterTable} is {@code true}, does not create any
+     * {@link InterfaceHttpData}, but decodes all the parameters in a single {@link FormParameters} table
+     * given by {@link #parameters()}, so that a body with many parameters only needs a few objects.
+     *
+     * @param request
+     *            the request to decode
+     * @param charset
+     *            the charset to use as default
+     * @param parameterTable
+     *            true to decode the parameters in a table instead of creating an {@link Attribute} per parameter
+     * @throws NullPointerException
+     *             for request or charset
+     * @throws ErrorDataDecoderException
+     *             if the default charset was wrong when decoding or other
+     *             errors
+     */
+    public HttpPostStandardRequestDecoder(HttpRequest request, Charset charset, boolean parameterTable) {
+        this(new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE), request, charset,
+             parameterTable ? new FormParameters(charset) : null, null);
+    }
+
+    /**
+     * Create a decoder which does not create any {@link InterfaceHttpData}, but pushes the decoded parameters
+     * to the given visitor instead.
+     *
+     * @param request
+     *            the request to decode
+     * @param visitor
+     *            the visitor notified of the decoded parameters
+     * @throws NullPointerException
+     *             for request or visitor
+     * @throws ErrorDataDecoderException
+     *             if the default charset was wrong when decoding or other
+     *             errors
+     */
+    public HttpPostStandardRequestDecoder(HttpRequest request, FormParamVisitor visitor) {
+        this(request, HttpConstants.DEFAULT_CHARSET, visitor);
+    }
+
+    /**
+     * Create a decoder which does not create any {@link InterfaceHttpData}, but pushes the decoded parameters
+     * to the given visitor instead.
+     *
+     * @param request
+     *            the request to decode
+     * @param charset
+     *            the charset to use as default
+     * @param visitor
+     *            the visitor notified of the decoded parameters
+     * @throws NullPointerException
+     *             for request or charset or visitor
+     * @throws ErrorDataDecoderException
+     *             if the default charset was wrong when decoding or other
+     *             errors
+     */
+    public HttpPostStandardRequestDecoder(HttpRequest request, Charset charset, FormParamVisitor visitor) {
+        this(new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE), request, charset, null,
+             checkNotNullWithIAE(visitor, "visitor"));
+    }
+
+    private HttpPostStandardRequestDecoder(HttpDataFactory factory, HttpRequest request, Charset charset,
+                                           FormParameters parameters, FormParamVisitor visitor) {
         this.request = checkNotNullWithIAE(request, "request");
         this.charset = checkNotNullWithIAE(charset, "charset");
         this.factory = checkNotNullWithIAE(factory, "factory");
+        this.parameters = parameters;
+        if (visitor != null) {
+            this.visitor = visitor;
+        } else if (parameters != null) {
+            this.visitor = parameters.visitor();
+        } else {
+            this.visitor = new HttpDataVisitor();
+        }
         try {
             if (request instanceof HttpContent) {
                 // Offer automatically if the given request is as type of HttpContent
@@ -185,18 +274,18 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
     }
 
     /**
-     * Set the amount of bytes after which read bytes in the buffer should be discarded.
-     * Setting this lower gives lower memory usage but with the overhead of more memory copies.
-     * Use {@code 0} to disable it.
+     * @deprecated No-op, see {@link InterfaceHttpPostRequestDecoder#setDiscardThreshold(int)}.
      */
+    @Deprecated
     @Override
     public void setDiscardThreshold(int discardThreshold) {
         this.discardThreshold = checkPositiveOrZero(discardThreshold, "discardThreshold");
     }
 
     /**
-     * Return the threshold in bytes after which read data in the buffer should be discarded.
+     * @deprecated The threshold is not used, see {@link InterfaceHttpPostRequestDecoder#setDiscardThreshold(int)}.
      */
+    @Deprecated
     @Override
     public int getDiscardThreshold() {
         return discardThreshold;
@@ -286,23 +375,11 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
             isLastChunk = true;
         }
 
-        Buffer buf = content.payload();
-        if (undecodedChunk == null) {
-            undecodedChunk =
-                    // Since the Handler will release the incoming later on, we need to copy it
-                    //
-                    // We are explicit allocate a buffer and NOT calling copy() as otherwise it may set a maxCapacity
-                    // which is not really usable for us as we may exceed it once we add more bytes.
-                    buf.isDirect() ?
-                        DefaultBufferAllocators.offHeapAllocator().allocate(buf.readableBytes()).writeBytes(buf) :
-                            DefaultBufferAllocators.onHeapAllocator().allocate(buf.readableBytes()).writeBytes(buf);
-        } else {
-            undecodedChunk.ensureWritable(buf.readableBytes());
-            undecodedChunk.writeBytes(buf);
-        }
+        // Received chunks are kept as segments, without copy, and released as soon as they are read
+        undecodedChunk = HttpPostBodyUtil.appendSegment(undecodedChunk, content.payload());
         parseBody();
-        if (undecodedChunk != null && undecodedChunk.writerOffset() > discardThreshold) {
-            undecodedChunk.compact();
+        if (undecodedChunk != null) {
+            HttpPostBodyUtil.discardReadSegments(undecodedChunk);
         }
         return this;
     }
@@ -352,11 +429,52 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
         return null;
     }
 
+    @Override
+    public InterfaceHttpData poll() {
+        checkDestroyed();
+
+        if (bodyListHttpDataRank < bodyListHttpData.size()) {
+            return bodyListHttpData.get(bodyListHttpDataRank++);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isEndOfData() {
+        checkDestroyed();
+
+        // A body ending with a CRLF or LF stops the decoding in the PREEPILOGUE status,
+        // and is fully decoded once the last chunk is received
+        return (currentStatus == MultiPartStatus.EPILOGUE ||
+                currentStatus == MultiPartStatus.PREEPILOGUE && isLastChunk) &&
+               bodyListHttpDataRank >= bodyListHttpData.size();
+    }
+
     @Override
     public InterfaceHttpData currentPartialHttpData() {
         return currentAttribute;
     }
 
+    /**
+     * Returns the table of the decoded parameters, when this decoder was created to decode the parameters
+     * in a table. The table stays owned by this decoder, and is closed by {@link #destroy()}.
+     *
+     * If chunked, all chunks must have been offered using offer() getMethod. If
+     * not, NotEnoughDataDecoderException will be raised.
+     *
+     * @return the decoded parameters, or {@code null} if this decoder creates an {@link Attribute} per parameter
+     * @throws NotEnoughDataDecoderException
+     *             need more chunks
+     */
+    public FormParameters parameters() {
+        checkDestroyed();
+
+        if (!isLastChunk) {
+            throw new NotEnoughDataDecoderException();
+        }
+        return parameters;
+    }
+
     /**
      * This getMethod will parse as much as possible data and fill the list and map
      *
@@ -408,97 +526,88 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
         }
         boolean contRead = true;
         try {
-            while (undecodedChunk.readableBytes() > 0 && contRead) {
-                char read = (char) undecodedChunk.readUnsignedByte();
-                currentpos++;
-                switch (currentStatus) {
-                case DISPOSITION:// search '='
-                    if (read == '=') {
+            // Jump from delimiter to delimiter instead of reading each byte
+            while (contRead && currentpos < undecodedChunk.writerOffset()) {
+                if (currentStatus == MultiPartStatus.DISPOSITION) { // search '=' or '&'
+                    int pos = HttpPostBodyUtil.indexOfAny(undecodedChunk, currentpos, (byte) '=', (byte) '&');
+                    if (pos == -1) {
+                        currentpos = undecodedChunk.writerOffset();
+                        break;
+                    }
+                    if (undecodedChunk.getByte(pos) == '=') {
                         currentStatus = MultiPartStatus.FIELD;
-                        equalpos = currentpos - 1;
-                        String key = decodeAttribute(Helpers.toString(undecodedChunk, firstpos, equalpos - firstpos, charset), charset);
-                        currentAttribute = factory.createAttribute(request, key);
-                        firstpos = currentpos;
-                    } else if (read == '&') { // special empty FIELD
-                        currentStatus = MultiPartStatus.DISPOSITION;
-                        ampersandpos = currentpos - 1;
-                        String key = decodeAttribute(
-                                Helpers.toString(undecodedChunk, firstpos, ampersandpos - firstpos, charset), charset);
+                        equalpos = pos;
+                        Buffer key = splitDecoded(firstpos, equalpos, 1); // skip equal
+                        valuePending = true;
+                        visitor.onKey(key);
+                    } else { // special empty FIELD
+                        ampersandpos = pos;
+                        Buffer key = splitDecoded(firstpos, ampersandpos, 1); // skip ampersand
 
                         // Some weird request bodies start with an '&' character, eg: &name=J&age=17.
                         // In that case, key would be "", will get exception:
                         // java.lang.IllegalArgumentException: Param 'name' must not be empty;
                         // Just check and skip empty key.
-                        if (!key.isEmpty()) {
-                            currentAttribute = factory.createAttribute(request, key);
-                            currentAttribute.setValue(""); // empty
-                            addHttpData(currentAttribute);
+                        if (key.readableBytes() > 0) {
+                            visitor.onKey(key);
+                            visitor.onValueChunk(DefaultBufferAllocators.preferredAllocator().allocate(0), true);
+                        } else {
+                            key.close();
                         }
-
-                        currentAttribute = null;
-                        firstpos = currentpos;
-                        contRead = true;
                     }
-                    break;
-                case FIELD:// search '&' or end of line
+                    // the split moved the offsets
+                    currentpos = undecodedChunk.readerOffset();
+                    firstpos = currentpos;
+                } else if (currentStatus == MultiPartStatus.FIELD) { // search '&' or end of line
+                    int pos = HttpPostBodyUtil.indexOfAny(undecodedChunk, currentpos, (byte) '&', HttpConstants.CR,
+                                                          HttpConstants.LF);
+                    if (pos == -1) {
+                        currentpos = undecodedChunk.writerOffset();
+                        break;
+                    }
+                    byte read = undecodedChunk.getByte(pos);
+                    ampersandpos = pos;
                     if (read == '&') {
                         currentStatus = MultiPartStatus.DISPOSITION;
-                        ampersandpos = currentpos - 1;
-                        undecodedChunk.readerOffset(firstpos);
-                        setFinalBuffer(undecodedChunk.readSplit(ampersandpos - firstpos));
-                        undecodedChunk.skipReadableBytes(1); // skip ampersand
-                        currentpos = 1;
-                        firstpos = currentpos;
-                        contRead = true;
+                        onLastValueChunk(splitDecoded(firstpos, ampersandpos, 1)); // skip ampersand
                     } else if (read == HttpConstants.CR) {
-                        if (undecodedChunk.readableBytes() > 0) {
-                            read = (char) undecodedChunk.readUnsignedByte();
-                            currentpos++;
-                            if (read == HttpConstants.LF) {
-                                currentStatus = MultiPartStatus.PREEPILOGUE;
-                                ampersandpos = currentpos - 2;
-                                undecodedChunk.readerOffset(firstpos);
-                                setFinalBuffer(undecodedChunk.readSplit(ampersandpos - firstpos));
-                                undecodedChunk.skipReadableBytes(2); // skip CRLF
-                                currentpos = 2;
-                                firstpos = currentpos;
-                                contRead = false;
-                            } else {
-                                // Error
-                                throw new ErrorDataDecoderException("Bad end of line");
-                            }
-                        } else {
-                            currentpos--;
+                        if (pos + 1 == undecodedChunk.writerOffset()) {
+                            // wait for the next byte
+                            currentpos = pos;
+                            break;
+                        }
+                        if (undecodedChunk.getByte(pos + 1) != HttpConstants.LF) {
+                            // Error
+                            throw new ErrorDataDecoderException("Bad end of line");
                         }
-                    } else if (read == HttpConstants.LF) {
                         currentStatus = MultiPartStatus.PREEPILOGUE;
-                        ampersandpos = currentpos - 1;
-                        undecodedChunk.readerOffset(firstpos);
-                        setFinalBuffer(undecodedChunk.readSplit(ampersandpos - firstpos));
-                        undecodedChunk.skipReadableBytes(1); // skip LF
-                        currentpos = 1;
-                        firstpos = currentpos;
+                        onLastValueChunk(splitDecoded(firstpos, ampersandpos, 2)); // skip CRLF
+                        contRead = false;
+                    } else {
+                        currentStatus = MultiPartStatus.PREEPILOGUE;
+                        onLastValueChunk(splitDecoded(firstpos, ampersandpos, 1)); // skip LF
                         contRead = false;
                     }
-                    break;
-                default:
+                    // the split moved the offsets
+                    currentpos = undecodedChunk.readerOffset();
+                    firstpos = currentpos;
+                } else {
                     // just stop
                     contRead = false;
                 }
             }
-            if (isLastChunk && currentAttribute != null) {
+            if (isLastChunk && valuePending) {
                 // special case
                 ampersandpos = currentpos;
                 if (ampersandpos > firstpos) {
-                    undecodedChunk.readerOffset(firstpos);
-                    setFinalBuffer(undecodedChunk.readSplit(ampersandpos - firstpos));
-                    currentpos = 0;
-                } else if (!currentAttribute.isCompleted()) {
-                    setFinalBuffer(DefaultBufferAllocators.preferredAllocator().allocate(0));
+                    onLastValueChunk(splitDecoded(firstpos, ampersandpos, 0));
+                    currentpos = undecodedChunk.readerOffset();
+                } else {
+                    onLastValueChunk(DefaultBufferAllocators.preferredAllocator().allocate(0));
                 }
                 firstpos = currentpos;
                 currentStatus = MultiPartStatus.EPILOGUE;
-            } else if (contRead && currentAttribute != null && currentStatus == MultiPartStatus.FIELD) {
+            } else if (contRead && valuePending && currentStatus == MultiPartStatus.FIELD) {
                 // make sure we don't forward a partial percent escape
                 if (firstpos <= currentpos - 1 && undecodedChunk.getUnsignedByte(currentpos - 1) == '%') {
                     currentpos--;
@@ -506,27 +615,33 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
                     currentpos -= 2;
                 }
                 // reset index except if to continue in case of FIELD getStatus
-                undecodedChunk.readerOffset(firstpos);
-                currentAttribute.addContent(decodeAttribute(undecodedChunk.readSplit(currentpos - firstpos), charset), false);
-                currentpos = 0;
+                visitor.onValueChunk(splitDecoded(firstpos, currentpos, 0), false);
+                currentpos = undecodedChunk.readerOffset();
                 firstpos = currentpos;
             }
             undecodedChunk.readerOffset(firstpos);
         } catch (ErrorDataDecoderException e) {
             // error while decoding
-            undecodedChunk.readerOffset(firstpos);
+            resetReaderOffset(firstpos);
             throw e;
         } catch (IOException e) {
             // error while decoding
-            undecodedChunk.readerOffset(firstpos);
+            resetReaderOffset(firstpos);
             throw new ErrorDataDecoderException(e);
         } catch (IllegalArgumentException e) {
             // error while decoding
-            undecodedChunk.readerOffset(firstpos);
+            resetReaderOffset(firstpos);
             throw new ErrorDataDecoderException(e);
         }
     }
 
+    /**
+     * Reset the reader offset after an error, the value in error being possibly already split from the chunk
+     */
+    private void resetReaderOffset(int firstpos) {
+        undecodedChunk.readerOffset(Math.min(firstpos, undecodedChunk.writerOffset()));
+    }
+
     /**
      * This getMethod fill the map and list with as much Attribute as possible from
      * Body in not Multipart mode.
@@ -542,51 +657,74 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
         parseBodyAttributesStandard();
     }
 
-    private void setFinalBuffer(Buffer buffer) throws IOException {
-        currentAttribute.addContent(decodeAttribute(buffer, charset), true);
-        addHttpData(currentAttribute);
-        currentAttribute = null;
-    }
-
     /**
-     * Decode component
-     *
-     * @return the decoded component
+     * Split the bytes from firstpos to endpos, followed by a delimiter to skip, and decode them
      */
-    private static String decodeAttribute(String s, Charset charset) {
-        try {
-            return QueryStringDecoder.decodeComponent(s, charset);
-        } catch (IllegalArgumentException e) {
-            throw new ErrorDataDecoderException("Bad string: '" + s + '\'', e);
-        }
+    private Buffer splitDecoded(int firstpos, int endpos, int delimiterLength) {
+        undecodedChunk.readerOffset(firstpos);
+        Buffer decoded = decodeAttribute(undecodedChunk.readSplit(endpos - firstpos), charset);
+        undecodedChunk.skipReadableBytes(delimiterLength);
+        return decoded;
     }
 
+    private void onLastValueChunk(Buffer value) throws IOException {
+        valuePending = false;
+        visitor.onValueChunk(value, true);
+    }
+
+    /**
+     * Decode the buffer in place, since the decoded content is never longer than the encoded one: only the bytes
+     * following the first escape are moved, and a buffer is only allocated when the given one is read-only.
+     */
     private static Buffer decodeAttribute(Buffer b, Charset charset) {
-        ByteCursor cursor = b.openCursor();
-        int firstEscaped = cursor.process(new UrlEncodedDetector());
+        int firstEscaped = HttpPostBodyUtil.indexOfAny(b, b.readerOffset(), (byte) '%', (byte) '+');
         if (firstEscaped == -1) {
             return b; // nothing to decode
         }
 
-        cursor = b.openCursor();
-        Buffer buf = b.isDirect() ? DefaultBufferAllocators.offHeapAllocator().allocate(b.readableBytes()) :
-                DefaultBufferAllocators.onHeapAllocator().allocate(b.readableBytes());
-        UrlDecoder urlDecode = new UrlDecoder(buf);
+        if (b.readOnly()) {
+            Buffer buf = b.isDirect() ? DefaultBufferAllocators.offHeapAllocator().allocate(b.readableBytes()) :
+                    DefaultBufferAllocators.onHeapAllocator().allocate(b.readableBytes());
+            firstEscaped -= b.readerOffset();
+            buf.writeBytes(b);
+            b.close();
+            b = buf;
+        }
+        try {
+            decodeInPlace(b, b.readerOffset(), firstEscaped, charset);
+        } catch (ErrorDataDecoderException e) {
+            b.close();
+            throw e;
+        }
+        return b;
+    }
+
+    /**
+     * Percent-decode in place the bytes of the buffer from the first escape up to its writer offset, and move its
+     * writer offset to the end of the decoded bytes.
+     *
+     * @param start the offset of the encoded string, for the error message
+     * @param firstEscaped the offset of the first '%' or '+'
+     * @throws ErrorDataDecoderException if an escape is invalid
+     */
+    private static void decodeInPlace(Buffer b, int start, int firstEscaped, Charset charset) {
+        ByteCursor cursor = b.openCursor(firstEscaped, b.writerOffset() - firstEscaped);
+        UrlDecoder urlDecode = new UrlDecoder(b, firstEscaped);
         int idx = cursor.process(urlDecode);
         if (urlDecode.nextEscapedIdx != 0) { // incomplete hex byte
             if (idx == -1) {
-                idx = b.readableBytes() - 1;
+                idx = b.writerOffset() - firstEscaped - 1;
             }
             idx -= urlDecode.nextEscapedIdx - 1;
-            buf.close();
-            String s = b.toString(charset);
-            b.close();
+            // the content before the invalid escape is already decoded
+            int decoded = urlDecode.writeIndex - start;
+            int invalid = firstEscaped + idx;
+            String s = Helpers.toString(b, start, decoded, charset) +
+                       Helpers.toString(b, invalid, b.writerOffset() - invalid, charset);
             throw new ErrorDataDecoderException(
-                String.format("Invalid hex byte at index '%d' in string: '%s'", idx, s));
+                String.format("Invalid hex byte at index '%d' in string: '%s'", decoded, s));
         }
-
-        b.close();
-        return buf;
+        b.writerOffset(urlDecode.writeIndex);
     }
 
     /**
@@ -607,6 +745,10 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
 
         destroyed = true;
 
+        if (parameters != null) {
+            parameters.close();
+        }
+
         if (undecodedChunk != null) {
             if (undecodedChunk.isAccessible()) {
                 undecodedChunk.close();
@@ -635,21 +777,47 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
         factory.removeHttpDataFromClean(request, data);
     }
 
-    private static final class UrlEncodedDetector implements ByteProcessor {
+    /**
+     * Default {@link FormParamVisitor}, creating an {@link Attribute} from the {@link HttpDataFactory}
+     * for each parameter
+     */
+    private final class HttpDataVisitor implements FormParamVisitor {
         @Override
-        public boolean process(byte value) {
-            return value != '%' && value != '+';
+        public void onKey(Buffer key) {
+            String name;
+            try (key) {
+                FieldNameCache cache = factory.getFieldNameCache();
+                name = cache != null ? cache.intern(key, key.readerOffset(), key.readableBytes(), charset)
+                                     : key.toString(charset);
+            }
+            currentAttribute = factory.createAttribute(request, name);
+        }
+
+        @Override
+        public void onValueChunk(Buffer value, boolean last) throws IOException {
+            currentAttribute.addContent(value, last);
+            if (last) {
+                Attribute attribute = currentAttribute;
+                currentAttribute = null;
+                addHttpData(attribute);
+            }
         }
     }
 
+    /**
+     * Decoder writing the decoded bytes at the write index of the decoded buffer itself, which never goes beyond the
+     * byte being processed.
+     */
     private static final class UrlDecoder implements ByteProcessor {
 
-        private final Buffer output;
+        private final Buffer buffer;
+        private int writeIndex;
         private int nextEscapedIdx;
         private byte hiByte;
 
-        UrlDecoder(Buffer output) {
-            this.output = output;
+        UrlDecoder(Buffer buffer, int writeIndex) {
+            this.buffer = buffer;
+            this.writeIndex = writeIndex;
         }
 
         @Override
@@ -665,15 +833,15 @@ public class HttpPostStandardRequestDecoder implements InterfaceHttpPostRequestD
                         ++nextEscapedIdx;
                         return false;
                     }
-                    output.writeByte((byte) ((hi << 4) + lo));
+                    buffer.setByte(writeIndex++, (byte) ((hi << 4) + lo));
                     nextEscapedIdx = 0;
                 }
             } else if (value == '%') {
                 nextEscapedIdx = 1;
             } else if (value == '+') {
-                output.writeByte((byte) ' ');
+                buffer.setByte(writeIndex++, (byte) ' ');
             } else {
-                output.writeByte(value);
+                buffer.setByte(writeIndex++, value);
             }
             return true;
         }
@@ -34,14 +34,19 @@ public interface InterfaceHttpPostRequestDecoder {
 
     /**
      * Set the amount of bytes after which read bytes in the buffer should be discarded.
-     * Setting this lower gives lower memory usage but with the overhead of more memory copies.
-     * Use {@code 0} to disable it.
+     *
+     * @deprecated No-op: the received chunks are kept as segments, each one released without any copy as soon as it
+     * is read, so read bytes are never accumulated. The value is only returned by {@link #getDiscardThreshold()}.
      */
+    @Deprecated
     void setDiscardThreshold(int discardThreshold);
 
     /**
      * Return the threshold in bytes after which read data in the buffer should be discarded.
+     *
+     * @deprecated The threshold is not used, see {@link #setDiscardThreshold(int)}.
      */
+    @Deprecated
     int getDiscardThreshold();
 
     /**
@@ -120,6 +125,41 @@ public interface InterfaceHttpPostRequestDecoder {
      */
     InterfaceHttpData next();
 
+    /**
+     * Returns the next available InterfaceHttpData or null if, at the time it
+     * is called, there is no more available InterfaceHttpData. Contrary to
+     * {@link #next()}, no exception is raised once the body is fully decoded:
+     * use {@link #isEndOfData()} to know if a subsequent call to offer(httpChunk)
+     * could enable more data.
+     *
+     * Be sure to call {@link InterfaceHttpData#close()} after you are done
+     * with processing to make sure to not leak any resources
+     *
+     * @return the next available InterfaceHttpData or null if none
+     */
+    default InterfaceHttpData poll() {
+        try {
+            return hasNext() ? next() : null;
+        } catch (HttpPostRequestDecoder.EndOfDataDecoderException e) {
+            return null;
+        }
+    }
+
+    /**
+     * True if the body is fully decoded and all the decoded InterfaceHttpData
+     * were already returned, such that no more data will be available.
+     *
+     * @return True if no more InterfaceHttpData will be available
+     */
+    default boolean isEndOfData() {
+        try {
+            hasNext();
+            return false;
+        } catch (HttpPostRequestDecoder.EndOfDataDecoderException e) {
+            return true;
+        }
+    }
+
     /**
      * Returns the current InterfaceHttpData if currently in decoding status,
      * meaning all data are not yet within, or null if there is no InterfaceHttpData
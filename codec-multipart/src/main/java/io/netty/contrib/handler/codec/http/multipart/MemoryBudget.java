@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.util.internal.ObjectUtil;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory shared by the content kept in memory of all the {@link MixedAttribute} and {@link MixedFileUpload},
+ * set with {@link DefaultHttpDataFactory#setMemoryBudget(MemoryBudget)}.
+ * <p>
+ * A mixed data reserves each content added in memory: once the bytes reserved by all the data reach the high
+ * watermark, the data growing or created are stored on disk even if smaller than their limit size, so that the
+ * memory used is bounded under load while the data stay in memory when the server is idle. Thread safe.
+ */
+public final class MemoryBudget {
+
+    private final long highWatermark;
+    private final AtomicLong used = new AtomicLong();
+
+    /**
+     * @param highWatermark the number of bytes of the content of all the mixed data kept in memory
+     *                      above which the data are stored on disk
+     */
+    public MemoryBudget(long highWatermark) {
+        this.highWatermark = ObjectUtil.checkPositiveOrZero(highWatermark, "highWatermark");
+    }
+
+    /**
+     * Reserve the given number of bytes, if the high watermark is not reached.
+     *
+     * @return {@code true} if the bytes are reserved, and so must be released with {@link #release(long)}
+     */
+    public boolean tryReserve(long bytes) {
+        for (;;) {
+            long current = used.get();
+            long next = current + bytes;
+            if (next > highWatermark) {
+                return false;
+            }
+            if (used.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release bytes previously reserved with {@link #tryReserve(long)}.
+     */
+    public void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    /**
+     * @return the number of bytes currently reserved
+     */
+    public long used() {
+        return used.get();
+    }
+
+    /**
+     * @return the number of bytes above which the data are stored on disk
+     */
+    public long highWatermark() {
+        return highWatermark;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryBudget(used=" + used.get() + ", highWatermark=" + highWatermark + ')';
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.handler.codec.http.HttpConstants;
+import io.netty5.util.AsciiString;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Parser of the header lines of a part of a multipart body, working on bytes.
+ * <p>
+ * Each line is copied once into a reused array, then the header name and the values (separated by ';', or by ','
+ * if there is no ';') are only kept as offsets in this array. Names are matched as ASCII bytes ignoring case,
+ * so that only the values actually needed are decoded as String, with the charset of the request.
+ */
+final class MultipartHeaderParser {
+
+    private static final int INITIAL_LINE_CAPACITY = 256;
+    private static final int INITIAL_VALUES_CAPACITY = 8;
+
+    private final Charset charset;
+    private final FieldNameCache fieldNameCache;
+
+    /**
+     * Copy of the bytes of the current line, without its line break
+     */
+    private byte[] line = new byte[INITIAL_LINE_CAPACITY];
+    private int lineLength;
+
+    private int nameStart;
+    private int nameEnd;
+
+    /**
+     * Trimmed bounds of each value of the current line
+     */
+    private int[] valueStarts = new int[INITIAL_VALUES_CAPACITY];
+    private int[] valueEnds = new int[INITIAL_VALUES_CAPACITY];
+    private int valueCount;
+
+    /**
+     * @param charset the charset used to decode the values as String
+     * @param fieldNameCache the cache of the names returned by {@link #fieldName(int)}, or {@code null}
+     */
+    MultipartHeaderParser(Charset charset, FieldNameCache fieldNameCache) {
+        this.charset = charset;
+        this.fieldNameCache = fieldNameCache;
+    }
+
+    /**
+     * Read and split one header line up to the CRLF or LF.
+     *
+     * @param buffer the buffer to read from its reader offset
+     * @return {@code true} if one line was read, {@code false} if the line is not complete, in which case
+     *         the reader offset is left unchanged
+     */
+    boolean readLine(Buffer buffer) {
+        final int readerIndex = buffer.readerOffset();
+        int posLfOrCrLf = HttpPostBodyUtil.findLineBreak(buffer, readerIndex);
+        if (posLfOrCrLf <= 0) {
+            return false;
+        }
+        if (line.length < posLfOrCrLf) {
+            line = new byte[Math.max(posLfOrCrLf, line.length << 1)];
+        }
+        buffer.copyInto(readerIndex, line, 0, posLfOrCrLf);
+        lineLength = posLfOrCrLf;
+        // Skip the line and its LF or CRLF
+        int lineBreak = buffer.getByte(readerIndex + posLfOrCrLf) == HttpConstants.CR ? 2 : 1;
+        buffer.skipReadableBytes(posLfOrCrLf + lineBreak);
+        split();
+        return true;
+    }
+
+    private void split() {
+        final byte[] line = this.line;
+        nameStart = skipWhitespaces(0, lineLength);
+        for (nameEnd = nameStart; nameEnd < lineLength; nameEnd++) {
+            byte value = line[nameEnd];
+            if (value == HttpConstants.COLON || isWhitespace(value)) {
+                break;
+            }
+        }
+        int colonEnd = nameEnd;
+        while (colonEnd < lineLength) {
+            if (line[colonEnd++] == HttpConstants.COLON) {
+                break;
+            }
+        }
+        final int start = skipWhitespaces(colonEnd, lineLength);
+        int end = lineLength;
+        while (end > start && isWhitespace(line[end - 1])) {
+            end--;
+        }
+        valueCount = 0;
+        if (indexOf(start, end, HttpConstants.SEMICOLON) >= 0) {
+            // Values separated by ';', except within quotes
+            boolean inQuote = false;
+            boolean escapeNext = false;
+            int valueStart = start;
+            for (int i = start; i < end; i++) {
+                byte value = line[i];
+                if (inQuote) {
+                    if (escapeNext) {
+                        escapeNext = false;
+                    } else if (value == '\\') {
+                        escapeNext = true;
+                    } else if (value == HttpConstants.DOUBLE_QUOTE) {
+                        inQuote = false;
+                    }
+                } else if (value == HttpConstants.DOUBLE_QUOTE) {
+                    inQuote = true;
+                } else if (value == HttpConstants.SEMICOLON) {
+                    addValue(valueStart, i);
+                    valueStart = i + 1;
+                }
+            }
+            addValue(valueStart, end);
+        } else {
+            // Values separated by ',', ignoring the trailing empty ones
+            int valueStart = start;
+            int lastNotEmpty = 0;
+            for (int i = start; i <= end; i++) {
+                if (i == end || line[i] == HttpConstants.COMMA) {
+                    addValue(valueStart, i);
+                    if (i > valueStart) {
+                        lastNotEmpty = valueCount;
+                    }
+                    valueStart = i + 1;
+                }
+            }
+            valueCount = Math.max(1, lastNotEmpty);
+        }
+    }
+
+    private void addValue(int start, int end) {
+        if (valueCount == valueStarts.length) {
+            valueStarts = Arrays.copyOf(valueStarts, valueCount << 1);
+            valueEnds = Arrays.copyOf(valueEnds, valueCount << 1);
+        }
+        start = skipWhitespaces(start, end);
+        while (end > start && isTrimmable(line[end - 1])) {
+            end--;
+        }
+        valueStarts[valueCount] = start;
+        valueEnds[valueCount] = end;
+        valueCount++;
+    }
+
+    /**
+     * @return {@code true} if the name of the current header is the given one, ignoring case
+     */
+    boolean isHeader(AsciiString name) {
+        return equalsIgnoreCase(nameStart, nameEnd, name);
+    }
+
+    /**
+     * @return the number of values of the current header
+     */
+    int valueCount() {
+        return valueCount;
+    }
+
+    /**
+     * @return {@code true} if the value at the given index is the given one, ignoring case
+     */
+    boolean valueEqualsIgnoreCase(int index, AsciiString expected) {
+        return index < valueCount && equalsIgnoreCase(valueStarts[index], valueEnds[index], expected);
+    }
+
+    /**
+     * @return {@code true} if the value at the given index starts with the given prefix, ignoring case
+     */
+    boolean valueStartsWithIgnoreCase(int index, AsciiString prefix) {
+        int start = valueStarts[index];
+        return valueEnds[index] - start >= prefix.length() &&
+               equalsIgnoreCase(start, start + prefix.length(), prefix);
+    }
+
+    /**
+     * @return {@code true} if the value at the given index is a parameter ({@code name=value})
+     */
+    boolean isParameter(int index) {
+        return indexOf(valueStarts[index], valueEnds[index], HttpConstants.EQUALS) >= 0;
+    }
+
+    /**
+     * @return {@code true} if the value at the given index is a parameter of the given name, ignoring case
+     *         and the characters removed by {@link #cleanValue(int)}
+     */
+    boolean isParameter(int index, AsciiString name) {
+        int start = valueStarts[index];
+        int equals = indexOf(start, valueEnds[index], HttpConstants.EQUALS);
+        if (equals < 0) {
+            return false;
+        }
+        int end = equals;
+        while (end > start && isCleaned(line[end - 1])) {
+            end--;
+        }
+        while (start < end && isCleaned(line[start])) {
+            start++;
+        }
+        return equalsIgnoreCase(start, end, name);
+    }
+
+    /**
+     * @return the value at the given index, as is
+     */
+    String value(int index) {
+        return decode(valueStarts[index], valueEnds[index]);
+    }
+
+    /**
+     * @return the value at the given index, cleaned from any unallowed character
+     */
+    String cleanValue(int index) {
+        return clean(valueStarts[index], valueEnds[index]);
+    }
+
+    /**
+     * @return the value of the parameter at the given index, after the '=', as is
+     */
+    String parameterValue(int index) {
+        int equals = indexOf(valueStarts[index], valueEnds[index], HttpConstants.EQUALS);
+        return equals < 0 ? null : decode(equals + 1, valueEnds[index]);
+    }
+
+    /**
+     * @return the value of the parameter at the given index, after the '=', cleaned from any unallowed character
+     */
+    String cleanParameterValue(int index) {
+        int equals = indexOf(valueStarts[index], valueEnds[index], HttpConstants.EQUALS);
+        return equals < 0 ? null : clean(equals + 1, valueEnds[index]);
+    }
+
+    /**
+     * @return the same as {@link #cleanParameterValue(int)}, interned through the cache of field names if any
+     */
+    String fieldName(int index) {
+        int equals = indexOf(valueStarts[index], valueEnds[index], HttpConstants.EQUALS);
+        if (equals < 0) {
+            return null;
+        }
+        int start = equals + 1;
+        int end = valueEnds[index];
+        if (fieldNameCache == null) {
+            return clean(start, end);
+        }
+        while (start < end && isCleaned(line[start])) {
+            start++;
+        }
+        while (end > start && isCleaned(line[end - 1])) {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            if (isCleaned(line[i])) {
+                // rare enough to not be cached
+                return clean(start, end);
+            }
+        }
+        return fieldNameCache.intern(line, start, end - start, charset);
+    }
+
+    /**
+     * @return the value of the parameter at the given index, after the '=', without its surrounding quotes if any
+     */
+    String unquotedParameterValue(int index) {
+        int equals = indexOf(valueStarts[index], valueEnds[index], HttpConstants.EQUALS);
+        if (equals < 0) {
+            return null;
+        }
+        int start = equals + 1;
+        int end = valueEnds[index];
+        if (end - start > 1 &&
+            line[start] == HttpConstants.DOUBLE_QUOTE && line[end - 1] == HttpConstants.DOUBLE_QUOTE) {
+            start++;
+            end--;
+        }
+        return decode(start, end);
+    }
+
+    private String decode(int start, int end) {
+        return new String(line, start, end - start, charset);
+    }
+
+    /**
+     * Same as the previous String based cleaning: ':', ',', '=', ';' and HT become spaces, '"' are removed,
+     * and the result is trimmed
+     */
+    private String clean(int start, int end) {
+        while (start < end && isCleaned(line[start])) {
+            start++;
+        }
+        while (end > start && isCleaned(line[end - 1])) {
+            end--;
+        }
+        boolean copy = false;
+        for (int i = start; i < end; i++) {
+            if (isCleaned(line[i])) {
+                copy = true;
+                break;
+            }
+        }
+        if (!copy) {
+            return decode(start, end);
+        }
+        byte[] cleaned = new byte[end - start];
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            byte value = line[i];
+            switch (value) {
+            case HttpConstants.COLON:
+            case HttpConstants.COMMA:
+            case HttpConstants.EQUALS:
+            case HttpConstants.SEMICOLON:
+            case HttpConstants.HT:
+                cleaned[length++] = HttpConstants.SP;
+                break;
+            case HttpConstants.DOUBLE_QUOTE:
+                // nothing added, just removes it
+                break;
+            default:
+                cleaned[length++] = value;
+                break;
+            }
+        }
+        return new String(cleaned, 0, length, charset);
+    }
+
+    private boolean equalsIgnoreCase(int start, int end, AsciiString expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = start, j = 0; i < end; i++, j++) {
+            if (toLowerCase(line[i]) != toLowerCase(expected.byteAt(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (line[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipWhitespaces(int start, int end) {
+        while (start < end && isWhitespace(line[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private static byte toLowerCase(byte value) {
+        return value >= 'A' && value <= 'Z' ? (byte) (value + 32) : value;
+    }
+
+    private static boolean isWhitespace(byte value) {
+        return value >= 0 && Character.isWhitespace(value);
+    }
+
+    /**
+     * @return {@code true} for the characters removed by {@link String#trim()}
+     */
+    private static boolean isTrimmable(byte value) {
+        return value >= 0 && value <= HttpConstants.SP;
+    }
+
+    /**
+     * @return {@code true} for the characters removed from the bounds of a cleaned value
+     */
+    private static boolean isCleaned(byte value) {
+        return isTrimmable(value) || value == HttpConstants.COLON || value == HttpConstants.COMMA ||
+               value == HttpConstants.EQUALS || value == HttpConstants.SEMICOLON ||
+               value == HttpConstants.DOUBLE_QUOTE;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.buffer.Buffer;
+
+import java.io.IOException;
+
+/**
+ * Listener notified by {@link HttpPostMultipartRequestDecoder} while the parts of a multipart body are decoded.
+ * <p>
+ * The content of each part is pushed as soon as it is parsed, without creating any {@link HttpData}, so that it
+ * can be streamed to its final destination with a memory usage bounded by the size of the received chunks.
+ * <p>
+ * For each part, the decoder calls {@link #onPartBegin(PartHeaders)}, then {@link #onPartContent(Buffer, boolean)}
+ * zero or more times, the last one with {@code last} set to {@code true}, and finally {@link #onPartEnd()}, or
+ * {@link #onPartAborted(Throwable)} if the part cannot be completed.
+ * {@link #onEpilogue()} is called once the closing delimiter of the multipart body is found.
+ * <p>
+ * All methods are called from the thread calling {@link HttpPostMultipartRequestDecoder#offer}.
+ */
+public interface MultipartListener {
+
+    /**
+     * A new part begins.
+     *
+     * @param headers the headers of the part
+     * @throws IOException if the part cannot be handled
+     */
+    void onPartBegin(PartHeaders headers) throws IOException;
+
+    /**
+     * Some content of the current part was decoded.
+     *
+     * @param content the decoded content, owned by the listener which is responsible for closing it
+     * @param last {@code true} if this is the last content of the current part
+     * @throws IOException if the content cannot be handled
+     */
+    void onPartContent(Buffer content, boolean last) throws IOException;
+
+    /**
+     * The current part is fully decoded.
+     *
+     * @throws IOException if the part cannot be completed
+     */
+    void onPartEnd() throws IOException;
+
+    /**
+     * The current part will never be completed, since its decoding failed or the decoder was destroyed before
+     * its end, so what was kept for this part should be released. No other method is called for this part.
+     * <p>
+     * It may be called after a failed {@link #onPartBegin(PartHeaders)}, and is also called from
+     * {@link HttpPostMultipartRequestDecoder#destroy()}. The default implementation does nothing.
+     *
+     * @param cause the error which stopped the decoding of the part, or {@code null} if the decoder was destroyed
+     */
+    default void onPartAborted(Throwable cause) {
+        // Nothing to do
+    }
+
+    /**
+     * The closing delimiter of the multipart body was found, so no other part will follow.
+     */
+    void onEpilogue();
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+/**
+ * Filter of the parts of a multipart body, set with {@link HttpPostMultipartRequestDecoder#setPartFilter(PartFilter)}.
+ * <p>
+ * The content of a rejected part is skipped up to the next delimiter, without creating any {@link HttpData}
+ * nor notifying the {@link MultipartListener}, and so without any copy nor disk write.
+ */
+public interface PartFilter {
+
+    /**
+     * @param headers the headers of the part
+     * @return {@code true} to decode the part, {@code false} to skip it
+     */
+    boolean accept(PartHeaders headers);
+
+    /**
+     * @param headers the headers of an accepted part
+     * @return the maximum size in bytes of the content of the part, or {@code -1} if not limited
+     */
+    default long maxSize(PartHeaders headers) {
+        return -1;
+    }
+}
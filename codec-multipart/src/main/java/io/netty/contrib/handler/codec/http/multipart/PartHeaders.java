@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty.contrib.handler.codec.http.multipart.HttpPostRequestDecoder.ErrorDataDecoderException;
+
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * Headers of a part of a multipart body, as given to {@link MultipartListener#onPartBegin(PartHeaders)}.
+ * <p>
+ * Only the headers and parameters used to decode a part are kept, each in its own slot, as filled by the decoder
+ * while parsing the header lines of the part.
+ */
+public final class PartHeaders {
+
+    private String name;
+    private String filename;
+    private String contentType;
+    private String charsetName;
+    private Charset charset;
+    private String contentTransferEncoding;
+    private long contentLength = -1;
+
+    PartHeaders() {
+    }
+
+    /**
+     * @param name the name of the field, inherited from the enclosing part in mixed mode
+     */
+    PartHeaders(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the field, from the Content-Disposition header, or {@code null} if not defined.
+     */
+    public String getName() {
+        return name;
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the filename, from the Content-Disposition header, or {@code null} if this part is not a file.
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * Returns {@code true} if this part is a file, so if it has a filename.
+     */
+    public boolean isFileUpload() {
+        return filename != null;
+    }
+
+    /**
+     * Returns the Content-Type header, without its parameters, or {@code null} if not defined.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Returns the charset parameter of the Content-Type header, or {@code null} if not defined.
+     */
+    public String getCharsetName() {
+        return charsetName;
+    }
+
+    void setCharsetName(String charsetName) {
+        this.charsetName = charsetName;
+        charset = null;
+    }
+
+    /**
+     * Returns the charset parameter of the Content-Type header, or {@code null} if not defined.
+     *
+     * @throws ErrorDataDecoderException if the charset is not supported
+     */
+    public Charset getCharset() {
+        if (charset == null && charsetName != null) {
+            try {
+                charset = Charset.forName(charsetName);
+            } catch (IllegalCharsetNameException e) {
+                throw new ErrorDataDecoderException(e);
+            } catch (UnsupportedCharsetException e) {
+                throw new ErrorDataDecoderException(e);
+            }
+        }
+        return charset;
+    }
+
+    /**
+     * Returns the Content-Transfer-Encoding header, or {@code null} if not defined.
+     */
+    public String getContentTransferEncoding() {
+        return contentTransferEncoding;
+    }
+
+    void setContentTransferEncoding(String contentTransferEncoding) {
+        this.contentTransferEncoding = contentTransferEncoding;
+    }
+
+    /**
+     * Returns the Content-Length header, or {@code -1} if not defined or invalid.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    void setContentLength(String contentLength) {
+        try {
+            this.contentLength = Long.parseLong(contentLength);
+        } catch (NumberFormatException ignored) {
+            this.contentLength = -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PartHeaders(name=" + name + ", filename=" + filename + ", contentType=" + contentType +
+                ", charset=" + charsetName + ", contentTransferEncoding=" + contentTransferEncoding +
+                ", contentLength=" + contentLength + ')';
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.util.internal.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Append-only file shared by the {@link AbstractDiskHttpData} of one request, each data being stored as an extent
+ * (offset, length) of the file instead of in its own temporary file, so that a request creates, opens and deletes
+ * a single file whatever its number of parts.
+ * <p>
+ * The extents are contiguous, so only one data at a time appends its content, which is the case while decoding.
+ * The file is created by the first append, and is reference counted: the factory and each data holding an extent
+ * retain it, and the file is closed and deleted once all of them released it. Thread safe.
+ */
+final class SpoolFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpoolFile.class);
+
+    private final String baseDir;
+    private final boolean deleteOnExit;
+
+    /**
+     * Set once by the first append
+     */
+    private volatile File file;
+    private volatile FileChannel channel;
+
+    /**
+     * All the following fields are guarded by this
+     */
+    private int refCnt = 1;
+    private long end;
+    private Object appender;
+
+    /**
+     * Create a spool file retained once by the caller, without creating the file yet.
+     *
+     * @param baseDir the directory of the file, or {@code null} for the temporary directory
+     */
+    SpoolFile(String baseDir, boolean deleteOnExit) {
+        this.baseDir = baseDir;
+        this.deleteOnExit = deleteOnExit;
+    }
+
+    /**
+     * @return the file, or {@code null} if nothing was appended yet
+     */
+    File file() {
+        return file;
+    }
+
+    /**
+     * @return {@code false} if the file was already deleted
+     */
+    synchronized boolean retain() {
+        if (refCnt == 0) {
+            return false;
+        }
+        refCnt++;
+        return true;
+    }
+
+    /**
+     * Release a reference, and close and delete the file once there is none left.
+     */
+    void release() {
+        synchronized (this) {
+            if (refCnt == 0 || --refCnt > 0 || file == null) {
+                return;
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close a file.", e);
+        }
+        if (!file.delete()) {
+            logger.warn("Failed to delete: {}", file);
+        }
+        if (deleteOnExit) {
+            DeleteFileOnExitHook.remove(file.getPath());
+        }
+    }
+
+    /**
+     * Start a new extent at the end of the file, appended by the given owner.
+     *
+     * @return the offset of the extent
+     * @throws IOException if another extent is still being appended
+     */
+    synchronized long begin(Object owner) throws IOException {
+        if (refCnt == 0) {
+            throw new ClosedChannelException();
+        }
+        if (appender != null && appender != owner) {
+            throw new IOException("Spool file already appended by another data: " + file);
+        }
+        if (file == null) {
+            File newFile = PlatformDependent.createTempFile("Spool_", ".tmp",
+                                                            baseDir == null ? null : new File(baseDir));
+            try {
+                channel = new RandomAccessFile(newFile, "rw").getChannel();
+            } catch (IOException e) {
+                if (!newFile.delete()) {
+                    logger.warn("Failed to delete: {}", newFile);
+                }
+                throw e;
+            }
+            if (deleteOnExit) {
+                DeleteFileOnExitHook.add(newFile.getPath());
+            }
+            file = newFile;
+        }
+        appender = owner;
+        return end;
+    }
+
+    /**
+     * Append the readable bytes of the buffer to the extent of the given owner.
+     *
+     * @return the number of bytes written
+     */
+    synchronized int append(Object owner, Buffer buffer) throws IOException {
+        if (appender != owner) {
+            throw new IOException("Spool file already appended by another data: " + file);
+        }
+        int length = buffer.readableBytes();
+        int remaining = length;
+        int written;
+        // the position of the channel is only moved by the appends
+        while (remaining > 0 && (written = buffer.transferTo(channel, remaining)) != -1) {
+            remaining -= written;
+            end += written;
+        }
+        return length - remaining;
+    }
+
+    /**
+     * The extent of the given owner is completed, or abandoned.
+     */
+    synchronized void complete(Object owner) {
+        if (appender == owner) {
+            appender = null;
+        }
+    }
+
+    /**
+     * Read from the given position, without moving the position of the appends.
+     */
+    int read(ByteBuffer destination, long position) throws IOException {
+        return channel.read(destination, position);
+    }
+
+    /**
+     * Read from the given position into the buffer, without moving the position of the appends.
+     */
+    int read(Buffer buffer, long position, int length) throws IOException {
+        return buffer.transferFrom(channel, position, length);
+    }
+
+    long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        return channel.transferTo(position, count, target);
+    }
+
+    MappedByteBuffer map(long position, long length) throws IOException {
+        return channel.map(MapMode.READ_ONLY, position, length);
+    }
+
+    /**
+     * @return a new channel reading the given extent, retaining this file until closed
+     */
+    ReadableByteChannel openChannel(long offset, long length) throws IOException {
+        if (!retain()) {
+            throw new ClosedChannelException();
+        }
+        return new ExtentChannel(offset, length);
+    }
+
+    @Override
+    public String toString() {
+        return "SpoolFile(" + file + ')';
+    }
+
+    private final class ExtentChannel implements ReadableByteChannel {
+        private final long end;
+        private long position;
+        private boolean closed;
+
+        ExtentChannel(long offset, long length) {
+            position = offset;
+            end = offset + length;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            if (position == end) {
+                return -1;
+            }
+            ByteBuffer limited = destination;
+            if (destination.remaining() > end - position) {
+                limited = destination.duplicate();
+                limited.limit(limited.position() + (int) (end - position));
+            }
+            int read = channel.read(limited, position);
+            if (read > 0) {
+                if (limited != destination) {
+                    destination.position(limited.position());
+                }
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.handler.codec.http.HttpRequest;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * Resolver of the final location of the file uploads, set with
+ * {@link DefaultHttpDataFactory#setDestinationResolver(UploadDestinationResolver)}, so that an upload is written
+ * once to its destination instead of being written to a temporary file and copied by {@link FileUpload#renameTo(File)}
+ * when the temporary directory and the destination are on different volumes.
+ * <p>
+ * See {@link AbstractDiskHttpData#setDestination(Path)}.
+ */
+@FunctionalInterface
+public interface UploadDestinationResolver {
+
+    /**
+     * @param request the request of the upload
+     * @param name the name of the part
+     * @param filename the filename given by the client, which must be sanitized before being used in a path
+     * @return the final file of the upload, or {@code null} to store the upload as usual
+     */
+    Path resolve(HttpRequest request, String name, String filename);
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.http.multipart;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.buffer.DefaultBufferAllocators;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Write-behind buffer of a file, coalescing the small slices of content given by the decoder into writes of a
+ * multiple of the buffer size, so that the file is written with few large aligned writes instead of one write
+ * per slice.
+ * <p>
+ * The buffered bytes and the aligned part of the next slice are written together with one gathering write,
+ * so large slices are written without being copied. Not thread safe.
+ */
+final class WriteBehindBuffer implements AutoCloseable {
+
+    private final int size;
+    private Buffer pending;
+
+    /**
+     * @param size the size of the buffer, and so of the aligned writes
+     */
+    WriteBehindBuffer(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Buffer the readable bytes of the given buffer, or write them with the buffered ones if they fill the buffer.
+     *
+     * @param channel the channel of the file, positioned at its end
+     * @param buffer the buffer to write, whose readable bytes are all consumed
+     */
+    void write(FileChannel channel, Buffer buffer) throws IOException {
+        int buffered = pending == null ? 0 : pending.readableBytes();
+        int readable = buffer.readableBytes();
+        if (buffered + readable >= size) {
+            int aligned = (buffered + readable) / size * size - buffered;
+            try (Buffer head = buffer.readSplit(aligned)) {
+                if (buffered == 0) {
+                    writeFully(channel, head);
+                } else {
+                    writeFully(channel, pending, head);
+                    pending.resetOffsets();
+                }
+            }
+            readable = buffer.readableBytes();
+            if (readable == 0) {
+                return;
+            }
+        }
+        if (pending == null) {
+            pending = DefaultBufferAllocators.offHeapAllocator().allocate(size);
+        }
+        buffer.copyInto(buffer.readerOffset(), pending, pending.writerOffset(), readable);
+        pending.skipWritableBytes(readable);
+        buffer.skipReadableBytes(readable);
+    }
+
+    /**
+     * Write the buffered bytes.
+     *
+     * @param channel the channel of the file, positioned at its end
+     */
+    void flush(FileChannel channel) throws IOException {
+        if (pending != null && pending.readableBytes() > 0) {
+            writeFully(channel, pending);
+            pending.resetOffsets();
+        }
+    }
+
+    /**
+     * Release the buffer, discarding the bytes not yet written.
+     */
+    @Override
+    public void close() {
+        if (pending != null) {
+            pending.close();
+            pending = null;
+        }
+    }
+
+    /**
+     * Write all the readable bytes of the given buffers, with one gathering write if possible.
+     */
+    private static void writeFully(FileChannel channel, Buffer... buffers) throws IOException {
+        List<ByteBuffer> components = new ArrayList<>(buffers.length);
+        long remaining = 0;
+        for (Buffer buffer : buffers) {
+            remaining += buffer.readableBytes();
+            try (var iterator = buffer.forEachComponent()) {
+                for (var component = iterator.firstReadable(); component != null;
+                     component = component.nextReadable()) {
+                    components.add(component.readableBuffer());
+                }
+            }
+        }
+        ByteBuffer[] array = components.toArray(new ByteBuffer[0]);
+        while (remaining > 0) {
+            remaining -= channel.write(array);
+        }
+        for (Buffer buffer : buffers) {
+            buffer.skipReadableBytes(buffer.readableBytes());
+        }
+    }
+}
@@ -17,12 +17,26 @@ package io.netty.contrib.handler.codec.http.multipart;
 
 import io.netty5.handler.codec.http.DefaultHttpRequest;
 import io.netty5.handler.codec.http.HttpRequest;
+import io.netty5.handler.codec.http.HttpUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
 import static io.netty.contrib.handler.codec.http.multipart.HttpPostBodyUtil.DEFAULT_TEXT_CONTENT_TYPE;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static io.netty5.handler.codec.http.HttpHeaderValues.IDENTITY;
@@ -145,4 +159,174 @@ public class DefaultHttpDataFactoryTest {
         attribute2.close();
         file2.close();
     }
+
+    @Test
+    public void destinationResolver() throws Exception {
+        Path directory = Files.createTempDirectory("uploads");
+        Path destination = directory.resolve("file.txt");
+        try {
+            factory.setDestinationResolver((request, name, filename) ->
+                    "file".equals(name) ? directory.resolve(filename) : null);
+            FileUpload file = factory.createFileUpload(
+                    req1, "file", "file.txt",
+                    DEFAULT_TEXT_CONTENT_TYPE, IDENTITY.toString(), UTF_8, 123
+            );
+            FileUpload other = factory.createFileUpload(
+                    req1, "other", "other.txt",
+                    DEFAULT_TEXT_CONTENT_TYPE, IDENTITY.toString(), UTF_8, 123
+            );
+            // the uploads with a destination are always on disk
+            assertFalse(file.isInMemory());
+            assertTrue(other.isInMemory());
+            file.setContent(Helpers.copiedBuffer("file content", UTF_8));
+            assertEquals(destination.toFile(), file.getFile());
+
+            // the completed upload is kept by the cleanup
+            factory.cleanRequestHttpData(req1);
+            assertEquals("file content", Files.readString(destination));
+        } finally {
+            Files.deleteIfExists(destination);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void storageChosenFromContentLength() throws Exception {
+        DefaultHttpDataFactory mixedFactory = new DefaultHttpDataFactory(100);
+        HttpRequest request = new DefaultHttpRequest(HTTP_1_1, POST, "/form");
+        try {
+            // too large for the memory
+            FileUpload large = mixedFactory.createFileUpload(
+                    request, "file", "file.txt", DEFAULT_TEXT_CONTENT_TYPE, IDENTITY.toString(), UTF_8, 1000);
+            assertTrue(large instanceof DiskFileUpload);
+            Attribute largeAttribute = mixedFactory.createAttribute(request, "attribute", 1000);
+            assertTrue(largeAttribute instanceof DiskAttribute);
+
+            // unknown sizes
+            FileUpload unknown = mixedFactory.createFileUpload(
+                    request, "file", "file.txt", DEFAULT_TEXT_CONTENT_TYPE, IDENTITY.toString(), UTF_8, 0);
+            assertTrue(unknown instanceof MixedFileUpload);
+            assertTrue(mixedFactory.createAttribute(request, "attribute") instanceof MixedAttribute);
+
+            // the whole body fits in memory
+            HttpUtil.setContentLength(request, 80);
+            FileUpload small = mixedFactory.createFileUpload(
+                    request, "file", "file.txt", DEFAULT_TEXT_CONTENT_TYPE, IDENTITY.toString(), UTF_8, 0);
+            assertTrue(small instanceof MemoryFileUpload);
+            assertTrue(mixedFactory.createAttribute(request, "attribute") instanceof MemoryAttribute);
+            assertTrue(mixedFactory.createAttribute(request, "attribute", 50) instanceof MemoryAttribute);
+        } finally {
+            mixedFactory.cleanAllHttpData();
+        }
+    }
+
+    @Test
+    public void spoolFiles() throws Exception {
+        Path directory = Files.createTempDirectory("spool");
+        DefaultHttpDataFactory diskFactory = new DefaultHttpDataFactory(true);
+        diskFactory.setBaseDir(directory.toString());
+        diskFactory.setSpoolFiles(true);
+        try {
+            Attribute attribute = diskFactory.createAttribute(req1, "attribute");
+            attribute.addContent(Helpers.copiedBuffer("value", UTF_8), false);
+            attribute.addContent(Helpers.copiedBuffer("1", UTF_8), true);
+            FileUpload file1 = diskFactory.createFileUpload(
+                    req1, "file1", "file1.txt", DEFAULT_TEXT_CONTENT_TYPE, IDENTITY.toString(), UTF_8, 0);
+            file1.addContent(Helpers.copiedBuffer("file1 content", UTF_8), true);
+            FileUpload file2 = diskFactory.createFileUpload(
+                    req1, "file2", "file2.txt", DEFAULT_TEXT_CONTENT_TYPE, IDENTITY.toString(), UTF_8, 0);
+            file2.setContent(Helpers.copiedBuffer("file2 content", UTF_8));
+
+            // a single file for the whole request
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(1, files.count());
+            }
+            assertEquals("value1", attribute.getValue());
+            assertEquals("file1 content", file1.getString(UTF_8));
+            assertArrayEquals("file2 content".getBytes(UTF_8), file2.get());
+            file1.usingBuffer(buf -> assertEquals("file1 content", buf.toString(UTF_8)));
+            try (InputStream stream = file2.openInputStream()) {
+                assertArrayEquals("file2 content".getBytes(UTF_8), stream.readAllBytes());
+            }
+
+            // the data kept by the application stay readable once the request is cleaned
+            diskFactory.removeHttpDataFromClean(req1, file2);
+            diskFactory.cleanRequestHttpData(req1);
+            assertFalse(attribute.isAccessible());
+            assertEquals("file2 content", file2.getString(UTF_8));
+            file2.close();
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            diskFactory.cleanAllHttpData();
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void spooledFileUploadRenameTo() throws Exception {
+        Path directory = Files.createTempDirectory("spool");
+        File dest = directory.resolve("dest.txt").toFile();
+        DefaultHttpDataFactory diskFactory = new DefaultHttpDataFactory(true);
+        diskFactory.setBaseDir(directory.toString());
+        diskFactory.setSpoolFiles(true);
+        try {
+            FileUpload file1 = diskFactory.createFileUpload(
+                    req1, "file1", "file1.txt", DEFAULT_TEXT_CONTENT_TYPE, IDENTITY.toString(), UTF_8, 0);
+            file1.addContent(Helpers.copiedBuffer("file1 content", UTF_8), true);
+            FileUpload file2 = diskFactory.createFileUpload(
+                    req1, "file2", "file2.txt", DEFAULT_TEXT_CONTENT_TYPE, IDENTITY.toString(), UTF_8, 0);
+            file2.addContent(Helpers.copiedBuffer("file2 ", UTF_8), false);
+            // the incomplete content has no file of its own yet
+            assertThrows(IOException.class, file2::getFile);
+            file2.addContent(Helpers.copiedBuffer("content", UTF_8), true);
+
+            assertTrue(file1.renameTo(dest));
+            assertEquals(dest, file1.getFile());
+            File copy = file2.getFile();
+            assertEquals("file2 content", Files.readString(copy.toPath()));
+
+            diskFactory.cleanRequestHttpData(req1);
+            assertEquals("file1 content", Files.readString(dest.toPath()));
+            assertFalse(copy.exists());
+        } finally {
+            diskFactory.cleanAllHttpData();
+            Files.deleteIfExists(dest.toPath());
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void concurrentRequests() throws Exception {
+        int threads = 4;
+        int requests = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Attribute>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    List<Attribute> cleaned = new ArrayList<>();
+                    for (int r = 0; r < requests; r++) {
+                        HttpRequest request = new DefaultHttpRequest(HTTP_1_1, POST, "/form");
+                        Attribute kept = factory.createAttribute(request, "kept", "value");
+                        Attribute attribute = factory.createAttribute(request, "attribute", "value");
+                        factory.removeHttpDataFromClean(request, kept);
+                        factory.cleanRequestHttpData(request);
+                        assertTrue(kept.isAccessible());
+                        kept.close();
+                        cleaned.add(attribute);
+                    }
+                    return cleaned;
+                }));
+            }
+            for (Future<List<Attribute>> future : futures) {
+                for (Attribute attribute : future.get(30, TimeUnit.SECONDS)) {
+                    assertFalse(attribute.isAccessible());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -21,16 +21,36 @@ import io.netty5.util.internal.PlatformDependent;
 import io.netty5.buffer.BufferUtil;
 import io.netty5.buffer.Buffer;
 import io.netty5.buffer.DefaultBufferAllocators;
+import io.netty5.util.concurrent.Future;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import io.netty5.channel.FileRegion;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -295,4 +315,397 @@ public class DiskFileUploadTest {
             }
         }
     }
+
+    @Test
+    public void testAddContentsWithWriteExecutor() throws Exception {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        try (DiskFileUpload f1 = new DiskFileUpload("file3", "file3", "application/json", null, null, 0)) {
+            f1.setWriteExecutor(tasks::add, 8);
+            f1.addContent(Helpers.copiedBuffer("{\"hello\":", StandardCharsets.UTF_8), false);
+            assertEquals(1, tasks.size());
+            assertFalse(f1.isWritable());
+            Future<Void> writable = f1.writableFuture();
+            assertFalse(writable.isDone());
+
+            tasks.poll().run();
+            assertTrue(writable.isDone());
+            assertTrue(f1.isWritable());
+            assertEquals(9, f1.getFile().length());
+
+            f1.addContent(Helpers.copiedBuffer("\"world\"}", StandardCharsets.UTF_8), true);
+            assertTrue(f1.isCompleted());
+            assertEquals(17, f1.length());
+            assertFalse(f1.writeFuture().isDone());
+
+            tasks.poll().run();
+            assertTrue(tasks.isEmpty());
+            assertTrue(f1.writeFuture().isSuccess());
+            assertEquals("{\"hello\":\"world\"}", f1.getString());
+        }
+    }
+
+    @Test
+    public void testDeleteWithPendingWrites() throws Exception {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        File file;
+        Future<Void> writes;
+        try (DiskFileUpload f1 = new DiskFileUpload("file4", "file4", "application/json", null, null, 0)) {
+            f1.setWriteExecutor(tasks::add, 1024);
+            Buffer buffer = Helpers.copiedBuffer("{\"hello\":\"world\"}", StandardCharsets.UTF_8);
+            f1.addContent(buffer, false);
+            assertFalse(buffer.isAccessible());
+            file = f1.getFile();
+            assertTrue(file.exists());
+            writes = f1.writeFuture();
+        }
+        // The file is deleted once the writes are aborted, without writing the pending content
+        assertTrue(file.exists());
+        tasks.poll().run();
+        assertTrue(tasks.isEmpty());
+        assertFalse(file.exists());
+        assertTrue(writes.isFailed());
+        assertInstanceOf(ClosedChannelException.class, writes.cause());
+    }
+
+    @Test
+    public void testAddContentsWithWriteBehindBuffer() throws Exception {
+        try (DiskFileUpload f1 = new DiskFileUpload("file5", "file5", "application/json", null, null, 0)) {
+            f1.setWriteBufferSize(8);
+            f1.addContent(Helpers.copiedBuffer("{\"h", StandardCharsets.UTF_8), false);
+            File file = f1.getFile();
+            assertEquals(0, file.length());
+            // Only a multiple of the buffer size is written, the remaining bytes stay buffered
+            f1.addContent(Helpers.copiedBuffer("ello\":\"", StandardCharsets.UTF_8), false);
+            assertEquals(8, file.length());
+            f1.addContent(Helpers.copiedBuffer("world\", \"again\":\"", StandardCharsets.UTF_8), false);
+            assertEquals(24, file.length());
+            f1.addContent(Helpers.copiedBuffer("world\"}", StandardCharsets.UTF_8), true);
+            assertEquals(34, file.length());
+            assertEquals(34, f1.length());
+            assertEquals("{\"hello\":\"world\", \"again\":\"world\"}", f1.getString());
+        }
+    }
+
+    @Test
+    public void testDurabilityPolicy() throws Exception {
+        List<String> events = new ArrayList<>();
+        List<File> renamed = new ArrayList<>();
+        DurabilityPolicy policy = new DurabilityPolicy() {
+            @Override
+            public Future<Void> completed(FileChannel channel) throws IOException {
+                events.add("completed " + channel.size());
+                return DurabilityPolicy.ON_RENAME.completed(channel);
+            }
+
+            @Override
+            public void renamed(File dest) throws IOException {
+                events.add("renamed");
+                renamed.add(dest);
+                DurabilityPolicy.ON_RENAME.renamed(dest);
+            }
+        };
+        File dest = new File("target/DiskFileUploadTest/testDurabilityPolicy.json");
+        dest.getParentFile().mkdirs();
+        Path destination = Files.createTempDirectory("uploads").resolve("file6.json");
+        try (DiskFileUpload f1 = new DiskFileUpload("file6", "file6", "application/json", null, null, 0);
+             DiskFileUpload f2 = new DiskFileUpload("file6", "file6", "application/json", null, null, 0)) {
+            f1.setDurabilityPolicy(policy);
+            f1.addContent(Helpers.copiedBuffer("{\"hello\":", StandardCharsets.UTF_8), false);
+            assertTrue(events.isEmpty());
+            f1.addContent(Helpers.copiedBuffer("\"world\"}", StandardCharsets.UTF_8), true);
+            assertTrue(f1.renameTo(dest));
+            assertEquals("{\"hello\":\"world\"}", f1.getString());
+
+            f2.setDurabilityPolicy(policy);
+            f2.setDestination(destination);
+            f2.setContent(Helpers.copiedBuffer("{\"hello\":\"world\"}", StandardCharsets.UTF_8));
+            assertEquals(destination.toFile(), f2.getFile());
+        } finally {
+            assertTrue(dest.delete());
+            Files.deleteIfExists(destination);
+            Files.deleteIfExists(destination.getParent());
+        }
+        assertEquals(List.of("completed 17", "renamed", "completed 17", "renamed"), events);
+        // the policy is given the final path of the files
+        assertEquals(List.of(dest, destination.toFile()), renamed);
+    }
+
+    @Test
+    public void testGroupCommitDurabilityPolicy() throws Exception {
+        Path directory = Files.createTempDirectory("uploads");
+        Path destination = directory.resolve("file16.json");
+        Future<Void> writes;
+        try (GroupCommitDurabilityPolicy policy = DurabilityPolicy.groupCommit(1, TimeUnit.HOURS);
+             DiskFileUpload f1 = new DiskFileUpload("file7", "file7", "application/json", null, null, 0);
+             DiskFileUpload f2 = new DiskFileUpload("file8", "file8", "application/json", null, null, 0);
+             DiskFileUpload f3 = new DiskFileUpload("file16", "file16", "application/json", null, null, 0)) {
+            f1.setDurabilityPolicy(policy);
+            f2.setDurabilityPolicy(policy);
+            f3.setDurabilityPolicy(policy);
+            f3.setDestination(destination);
+            f1.setContent(Helpers.copiedBuffer("{\"hello\":\"world\"}", StandardCharsets.UTF_8));
+            f2.addContent(Helpers.copiedBuffer("{\"hello\":\"again\"}", StandardCharsets.UTF_8), true);
+            f3.addContent(Helpers.copiedBuffer("{\"hello\":\"moved\"}", StandardCharsets.UTF_8), true);
+            // The write futures are only completed, and the file moved, once the files are forced
+            assertFalse(f1.writeFuture().isDone());
+            assertFalse(f2.writeFuture().isDone());
+            writes = f3.writeFuture();
+            assertFalse(writes.isDone());
+            assertFalse(Files.exists(destination));
+
+            // a file which cannot be forced fails its future
+            FileChannel closed = FileChannel.open(Files.createFile(directory.resolve("closed")));
+            closed.close();
+            Future<Void> failed = policy.completed(closed);
+            policy.close();
+            assertInstanceOf(ClosedChannelException.class, failed.cause());
+            assertTrue(f1.writeFuture().isSuccess());
+            assertTrue(f2.writeFuture().isSuccess());
+            assertTrue(writes.isSuccess());
+            assertEquals("{\"hello\":\"world\"}", f1.getString());
+            assertEquals("{\"hello\":\"again\"}", f2.getString());
+            assertEquals(destination.toFile(), f3.getFile());
+            assertEquals("{\"hello\":\"moved\"}", Files.readString(destination));
+        } finally {
+            Files.deleteIfExists(destination);
+            Files.deleteIfExists(directory.resolve("closed"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void testMappedReads() throws Exception {
+        byte[] bytes = new byte[20000];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        try (DiskFileUpload f1 = new DiskFileUpload("file9", "file9", "application/json", null, null, 0)) {
+            f1.setMappedReads(true);
+            f1.setContent(Helpers.copiedBuffer(bytes));
+
+            f1.usingBuffer(buffer -> {
+                assertTrue(buffer.readOnly());
+                byte[] content = new byte[buffer.readableBytes()];
+                buffer.readBytes(content, 0, content.length);
+                assertArrayEquals(bytes, content);
+            });
+            assertEquals(new String(bytes, StandardCharsets.ISO_8859_1), f1.getString(StandardCharsets.ISO_8859_1));
+
+            ByteBuffer region = f1.map(100, 50);
+            assertTrue(region.isReadOnly());
+            assertEquals(50, region.remaining());
+            assertEquals(bytes[100], region.get(0));
+
+            byte[] chunks = new byte[bytes.length];
+            int position = 0;
+            for (;;) {
+                try (Buffer chunk = f1.getChunk(7000)) {
+                    if (chunk.readableBytes() == 0) {
+                        break;
+                    }
+                    assertTrue(chunk.readOnly());
+                    int length = chunk.readableBytes();
+                    chunk.readBytes(chunks, position, length);
+                    position += length;
+                }
+            }
+            assertEquals(bytes.length, position);
+            assertArrayEquals(bytes, chunks);
+        }
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        byte[] bytes = new byte[20000];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        try (DiskFileUpload f1 = new DiskFileUpload("file10", "file10", "application/json", null, null, 0)) {
+            f1.addContent(Helpers.copiedBuffer(bytes, 0, 10000), false);
+            f1.addContent(Helpers.copiedBuffer(bytes, 10000, 10000), true);
+            try (InputStream stream = f1.openInputStream();
+                 ReadableByteChannel channel = f1.openChannel()) {
+                byte[] head = new byte[100];
+                assertEquals(100, stream.readNBytes(head, 0, 100));
+                ByteBuffer content = ByteBuffer.allocate(bytes.length);
+                while (channel.read(content) > 0) {
+                    // read all
+                }
+                assertArrayEquals(bytes, content.array());
+                byte[] tail = stream.readAllBytes();
+                assertEquals(bytes.length - 100, tail.length);
+                assertEquals(bytes[100], tail[0]);
+            }
+        }
+    }
+
+    @Test
+    public void testTransferTo() throws Exception {
+        byte[] bytes = new byte[20000];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        try (DiskFileUpload f1 = new DiskFileUpload("file11", "file11", "application/json", null, null, 0)) {
+            f1.addContent(Helpers.copiedBuffer(bytes, 0, 10000), false);
+            f1.addContent(Helpers.copiedBuffer(bytes, 10000, 10000), true);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(bytes.length, f1.transferTo(Channels.newChannel(out), 0, Long.MAX_VALUE));
+            assertArrayEquals(bytes, out.toByteArray());
+
+            File dest = PlatformDependent.createTempFile(UUID.randomUUID().toString(), ".tmp", null);
+            try (FileChannel target = FileChannel.open(dest.toPath(), StandardOpenOption.WRITE)) {
+                assertEquals(5000, f1.transferTo(target, 15000, 10000));
+                assertEquals(0, f1.transferTo(target, bytes.length, 10));
+            } finally {
+                assertArrayEquals(Arrays.copyOfRange(bytes, 15000, 20000), Files.readAllBytes(dest.toPath()));
+                dest.delete();
+            }
+
+            FileRegion region = f1.toFileRegion(100, 1000);
+            try {
+                out.reset();
+                WritableByteChannel target = Channels.newChannel(out);
+                while (region.transferred() < region.count()) {
+                    region.transferTo(target, region.transferred());
+                }
+                assertArrayEquals(Arrays.copyOfRange(bytes, 100, 1100), out.toByteArray());
+            } finally {
+                region.release();
+            }
+            // the regions are bounded by the content
+            region = f1.toFileRegion(19000, 5000);
+            assertEquals(1000, region.count());
+            region.release();
+            region = f1.toFileRegion(30000, 10);
+            assertEquals(0, region.count());
+            region.release();
+        }
+    }
+
+    @Test
+    public void testDestination() throws Exception {
+        Path directory = Files.createTempDirectory("uploads");
+        Path destination = directory.resolve("file12.json");
+        Path asyncDestination = directory.resolve("file13.json");
+        try {
+            try (DiskFileUpload f1 = new DiskFileUpload("file12", "file12", "application/json", null, null, 0)) {
+                f1.setDestination(destination);
+                f1.addContent(Helpers.copiedBuffer("{\"hello\":", StandardCharsets.UTF_8), false);
+                assertEquals(directory, f1.getFile().toPath().getParent());
+                assertFalse(Files.exists(destination));
+                f1.addContent(Helpers.copiedBuffer("\"world\"}", StandardCharsets.UTF_8), true);
+                assertEquals(destination.toFile(), f1.getFile());
+                assertEquals("{\"hello\":\"world\"}", f1.getString());
+                f1.delete();
+            }
+            // the completed file is kept
+            assertEquals("{\"hello\":\"world\"}", Files.readString(destination));
+
+            Queue<Runnable> tasks = new ArrayDeque<>();
+            try (DiskFileUpload f2 = new DiskFileUpload("file13", "file13", "application/json", null, null, 0)) {
+                f2.setWriteExecutor(tasks::add, 1024);
+                f2.setDestination(asyncDestination);
+                f2.addContent(Helpers.copiedBuffer("{\"hello\":\"world\"}", StandardCharsets.UTF_8), true);
+                assertFalse(Files.exists(asyncDestination));
+                tasks.poll().run();
+                assertTrue(f2.writeFuture().isSuccess());
+                assertEquals(asyncDestination.toFile(), f2.getFile());
+                assertEquals("{\"hello\":\"world\"}", f2.getString());
+            }
+            assertEquals("{\"hello\":\"world\"}", Files.readString(asyncDestination));
+
+            try (DiskFileUpload f3 = new DiskFileUpload("file14", "file14", "application/json", null, null, 0)) {
+                f3.setDestination(directory.resolve("file14.json"));
+                f3.addContent(Helpers.copiedBuffer("{\"hello\":", StandardCharsets.UTF_8), false);
+                // an incomplete upload is deleted
+                f3.delete();
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(2, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(destination);
+            Files.deleteIfExists(asyncDestination);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void testDestinationClosedBeforeWrites() throws Exception {
+        Path directory = Files.createTempDirectory("uploads");
+        Path destination = directory.resolve("file17.json");
+        try {
+            Queue<Runnable> tasks = new ArrayDeque<>();
+            Future<Void> writes;
+            try (DiskFileUpload f1 = new DiskFileUpload("file17", "file17", "application/json", null, null, 0)) {
+                f1.setWriteExecutor(tasks::add, 1024);
+                f1.setDestination(destination);
+                f1.addContent(Helpers.copiedBuffer("{\"hello\":\"world\"}", StandardCharsets.UTF_8), true);
+                writes = f1.writeFuture();
+            }
+            // the completed upload is still written and moved once closed
+            assertFalse(writes.isDone());
+            tasks.poll().run();
+            assertTrue(tasks.isEmpty());
+            assertTrue(writes.isSuccess());
+            assertEquals("{\"hello\":\"world\"}", Files.readString(destination));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(1, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(destination);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void testPreallocatedFile() throws Exception {
+        try (DiskFileUpload f1 = new DiskFileUpload("file15", "file15", "application/json", null, null, 100)) {
+            f1.addContent(Helpers.copiedBuffer("{\"hello\":", StandardCharsets.UTF_8), false);
+            assertEquals(100, f1.getFile().length());
+            // the readers of the incomplete data only read the written content
+            try (InputStream stream = f1.openInputStream()) {
+                assertEquals("{\"hello\":", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            try (InputStream stream = Channels.newInputStream(f1.openChannel())) {
+                assertEquals(9, stream.readAllBytes().length);
+            }
+            assertEquals(9, f1.transferTo(Channels.newChannel(new ByteArrayOutputStream()), 0, 100));
+            FileRegion region = f1.toFileRegion(0, 100);
+            try {
+                assertEquals(9, region.count());
+            } finally {
+                region.release();
+            }
+            try (Buffer chunk = f1.getChunk(100)) {
+                // read from the position of the writes, not from the preallocated bytes
+                assertEquals(0, chunk.readableBytes());
+            }
+            f1.addContent(Helpers.copiedBuffer("\"world\"}", StandardCharsets.UTF_8), true);
+            // truncated to the actual content
+            assertEquals(17, f1.getFile().length());
+            assertEquals("{\"hello\":\"world\"}", f1.getString());
+        }
+
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        try (DiskFileUpload f2 = new DiskFileUpload("file16", "file16", "application/json", null, null, 100)) {
+            f2.setWriteExecutor(tasks::add, 1024);
+            f2.addContent(Helpers.copiedBuffer("{\"hello\":", StandardCharsets.UTF_8), false);
+            tasks.poll().run();
+            assertEquals(100, f2.getFile().length());
+            f2.addContent(Helpers.copiedBuffer("\"world\"}", StandardCharsets.UTF_8), true);
+            tasks.poll().run();
+            assertEquals(17, f2.getFile().length());
+            assertEquals("{\"hello\":\"world\"}", f2.getString());
+        }
+
+        // the size given by the client is not trusted beyond the maximum size and a sane limit
+        try (DiskFileUpload f3 = new DiskFileUpload("file18", "file18", "application/json", null, null,
+                                                    Long.MAX_VALUE / 2)) {
+            f3.addContent(Helpers.copiedBuffer("{\"hello\":", StandardCharsets.UTF_8), false);
+            assertEquals(9, f3.getFile().length());
+            f3.addContent(Helpers.copiedBuffer("\"world\"}", StandardCharsets.UTF_8), true);
+            assertEquals("{\"hello\":\"world\"}", f3.getString());
+        }
+        try (DiskFileUpload f4 = new DiskFileUpload("file19", "file19", "application/json", null, null, 100)) {
+            f4.setMaxSize(50);
+            f4.addContent(Helpers.copiedBuffer("{\"hello\":", StandardCharsets.UTF_8), false);
+            assertEquals(9, f4.getFile().length());
+        }
+    }
 }
@@ -318,6 +318,483 @@ public class HttpPostMultiPartRequestDecoderTest {
         }
     }
 
+    @Test
+    public void testFileContentLookingLikeDelimiter() throws IOException {
+        final String boundary = "dLV9Wyq26L_-JQxk6ferf-RT153LhOO";
+        // Content full of '-' and of partial or not preceded by line break delimiters
+        final String fileContent = "----------\r\n--" + boundary.substring(0, boundary.length() - 1) +
+                "\r\n-" + boundary + "x--" + boundary + "--\r--" + boundary + "\n-" + boundary.substring(1) +
+                "\r\n\r\n---------";
+        final String body = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"dashes.bin\"\r\n" +
+                "Content-Type: application/octet-stream\r\n" +
+                "\r\n" + fileContent + "\r\n" +
+                "--" + boundary + "--\r\n";
+        final byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+
+        for (int chunkSize : new int[] { 1, 7, 33, bytes.length }) {
+            HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+            request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+            HttpPostMultipartRequestDecoder decoder =
+                    new HttpPostMultipartRequestDecoder(new DefaultHttpDataFactory(false), request);
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                int length = Math.min(chunkSize, bytes.length - offset);
+                try (DefaultHttpContent content =
+                             new DefaultHttpContent(Helpers.copiedBuffer(bytes, offset, length))) {
+                    decoder.offer(content);
+                }
+            }
+            try (DefaultLastHttpContent last = Helpers.defaultLastHttpContent()) {
+                decoder.offer(last);
+            }
+            FileUpload data = (FileUpload) decoder.getBodyHttpData("file");
+            assertNotNull(data, "chunk size " + chunkSize);
+            assertEquals(fileContent, data.getString(StandardCharsets.US_ASCII), "chunk size " + chunkSize);
+            decoder.destroy();
+        }
+    }
+
+    @Test
+    public void testEmptyAndCrLfContentSplitInSmallChunks() throws IOException {
+        final String boundary = "861fbeab-cd20-470c-9609-d40a0f704466";
+        final String body = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"empty\"\r\n" +
+                "\r\n" +
+                "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"crlf\"\r\n" +
+                "\r\n" +
+                "\r\n\r\r\n\r\n" +
+                "--" + boundary + "--\r\n";
+        final byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+
+        for (int chunkSize = 1; chunkSize < 8; chunkSize++) {
+            HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+            request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+            HttpPostMultipartRequestDecoder decoder =
+                    new HttpPostMultipartRequestDecoder(new DefaultHttpDataFactory(false), request);
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                int length = Math.min(chunkSize, bytes.length - offset);
+                try (DefaultHttpContent content =
+                             new DefaultHttpContent(Helpers.copiedBuffer(bytes, offset, length))) {
+                    decoder.offer(content);
+                }
+            }
+            try (DefaultLastHttpContent last = Helpers.defaultLastHttpContent()) {
+                decoder.offer(last);
+            }
+            assertEquals("", ((Attribute) decoder.getBodyHttpData("empty")).getValue(), "chunk size " + chunkSize);
+            assertEquals("\r\n\r\r\n", ((Attribute) decoder.getBodyHttpData("crlf")).getValue(),
+                    "chunk size " + chunkSize);
+            decoder.destroy();
+        }
+    }
+
+    @Test
+    public void testReadOnlyAndWritableChunksKeptAsSegments() throws IOException {
+        final String boundary = "861fbeab-cd20-470c-9609-d40a0f704466";
+        final String body = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"segments.txt\"\r\n" +
+                "\r\n" +
+                "first segment, second segment, third segment, fourth segment\r\n" +
+                "--" + boundary + "--\r\n";
+        final byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+        final int chunkSize = 16;
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        HttpPostMultipartRequestDecoder decoder =
+                new HttpPostMultipartRequestDecoder(new DefaultHttpDataFactory(false), request);
+        for (int offset = 0, rank = 0; offset < bytes.length; offset += chunkSize, rank++) {
+            Buffer buf = Helpers.copiedBuffer(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+            if (rank % 3 == 1) {
+                buf.makeReadOnly();
+            }
+            try (DefaultHttpContent content = new DefaultHttpContent(buf)) {
+                decoder.offer(content);
+                assertEquals(0, buf.readableBytes(), "Payload should be fully taken by the decoder");
+            }
+        }
+        try (DefaultLastHttpContent last = Helpers.defaultLastHttpContent()) {
+            decoder.offer(last);
+        }
+        FileUpload data = (FileUpload) decoder.getBodyHttpData("file");
+        assertEquals("first segment, second segment, third segment, fourth segment",
+                data.getString(StandardCharsets.US_ASCII));
+        assertTrue(decoder.getCurrentAllocatedCapacity() < bytes.length,
+                "Read segments should have been released");
+        decoder.destroy();
+    }
+
+    @Test
+    public void testMultipartListenerStreamsParts() {
+        final String boundary = "861fbeab-cd20-470c-9609-d40a0f704466";
+        final String body = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"field\"\r\n" +
+                "\r\n" +
+                "value\r\n" +
+                "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"streamed.txt\"\r\n" +
+                "Content-Type: text/plain; charset=UTF-8\r\n" +
+                "\r\n" +
+                "streamed content of the file, split over several chunks\r\n" +
+                "--" + boundary + "--\r\n";
+        final byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+        final List<String> events = new ArrayList<>();
+        final StringBuilder fileContent = new StringBuilder();
+        MultipartListener listener = new MultipartListener() {
+            private PartHeaders headers;
+
+            @Override
+            public void onPartBegin(PartHeaders headers) {
+                this.headers = headers;
+                events.add("begin " + headers.getName() + ' ' + headers.getFilename());
+            }
+
+            @Override
+            public void onPartContent(Buffer content, boolean last) {
+                try (content) {
+                    if (headers.isFileUpload()) {
+                        fileContent.append(content.toString(StandardCharsets.US_ASCII));
+                    } else if (content.readableBytes() > 0) {
+                        events.add("content " + content.toString(StandardCharsets.US_ASCII));
+                    }
+                }
+                if (last) {
+                    events.add("last");
+                }
+            }
+
+            @Override
+            public void onPartEnd() {
+                events.add("end");
+            }
+
+            @Override
+            public void onEpilogue() {
+                events.add("epilogue");
+            }
+        };
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        HttpPostMultipartRequestDecoder decoder = new HttpPostMultipartRequestDecoder(request, listener);
+        final int chunkSize = 20;
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            Buffer buf = Helpers.copiedBuffer(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+            try (DefaultHttpContent content = new DefaultHttpContent(buf)) {
+                decoder.offer(content);
+            }
+        }
+        try (DefaultLastHttpContent last = Helpers.defaultLastHttpContent()) {
+            decoder.offer(last);
+        }
+        assertEquals(Arrays.asList("begin field null", "content value", "last", "end",
+                                   "begin file streamed.txt", "last", "end", "epilogue"), events);
+        assertEquals("streamed content of the file, split over several chunks", fileContent.toString());
+        assertTrue(decoder.getBodyHttpDatas().isEmpty(), "No HttpData should be created");
+        assertNull(decoder.currentPartialHttpData());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testMultipartListenerPartAborted() {
+        final String boundary = "861fbeab-cd20-470c-9609-d40a0f704466";
+        final String body = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"aborted.txt\"\r\n" +
+                "\r\n" +
+                "content of a file never completed";
+        final List<String> events = new ArrayList<>();
+        MultipartListener listener = new MultipartListener() {
+            @Override
+            public void onPartBegin(PartHeaders headers) {
+                events.add("begin " + headers.getName());
+            }
+
+            @Override
+            public void onPartContent(Buffer content, boolean last) {
+                content.close();
+            }
+
+            @Override
+            public void onPartEnd() {
+                events.add("end");
+            }
+
+            @Override
+            public void onPartAborted(Throwable cause) {
+                events.add("aborted " + cause);
+            }
+
+            @Override
+            public void onEpilogue() {
+                events.add("epilogue");
+            }
+        };
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        HttpPostMultipartRequestDecoder decoder = new HttpPostMultipartRequestDecoder(request, listener);
+        try (DefaultHttpContent content = new DefaultHttpContent(
+                Helpers.copiedBuffer(body, StandardCharsets.US_ASCII))) {
+            decoder.offer(content);
+        }
+        decoder.destroy();
+        assertEquals(Arrays.asList("begin file", "aborted null"), events);
+    }
+
+    @Test
+    public void testPartHeadersParsedIgnoringCase() {
+        final String boundary = "861fbeab-cd20-470c-9609-d40a0f704466";
+        final String body = "--" + boundary + "\r\n" +
+                "content-disposition:form-data;  NAME=\"my field\" ; Filename=\"résumé; v2.txt\"\r\n" +
+                "CONTENT-TYPE: text/plain ; Charset=\"UTF-8\"\r\n" +
+                "Content-Transfer-Encoding : binary\r\n" +
+                "content-length: 4\r\n" +
+                "\r\n" +
+                "data\r\n" +
+                "--" + boundary + "--\r\n";
+        final List<PartHeaders> parts = new ArrayList<>();
+        MultipartListener listener = new MultipartListener() {
+            @Override
+            public void onPartBegin(PartHeaders headers) {
+                parts.add(headers);
+            }
+
+            @Override
+            public void onPartContent(Buffer content, boolean last) {
+                content.close();
+            }
+
+            @Override
+            public void onPartEnd() {
+            }
+
+            @Override
+            public void onEpilogue() {
+            }
+        };
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        HttpPostMultipartRequestDecoder decoder =
+                new HttpPostMultipartRequestDecoder(request, StandardCharsets.UTF_8, listener);
+        try (DefaultLastHttpContent last = new DefaultLastHttpContent(
+                Helpers.copiedBuffer(body, StandardCharsets.UTF_8))) {
+            decoder.offer(last);
+        }
+        assertEquals(1, parts.size());
+        PartHeaders headers = parts.get(0);
+        assertEquals("my field", headers.getName());
+        assertEquals("résumé; v2.txt", headers.getFilename());
+        assertEquals("text/plain", headers.getContentType());
+        assertEquals(StandardCharsets.UTF_8, headers.getCharset());
+        assertEquals("binary", headers.getContentTransferEncoding());
+        assertEquals(4, headers.getContentLength());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testMixedPartHeadersInheritFieldName() throws IOException {
+        final String boundary = "AaB03x";
+        final String mixedBoundary = "BbC04y";
+        final String body = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"field1\"\r\n" +
+                "\r\n" +
+                "Joe Blow\r\n" +
+                "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"pics\"\r\n" +
+                "Content-Type: multipart/mixed; boundary=" + mixedBoundary + "\r\n" +
+                "\r\n" +
+                "--" + mixedBoundary + "\r\n" +
+                "Content-Disposition: file; filename=\"file1.txt\"\r\n" +
+                "Content-Type: text/plain\r\n" +
+                "\r\n" +
+                "contents of file1.txt\r\n" +
+                "--" + mixedBoundary + "\r\n" +
+                "Content-Disposition: file; filename=\"file2.gif\"\r\n" +
+                "Content-Type: image/gif\r\n" +
+                "Content-Transfer-Encoding: binary\r\n" +
+                "\r\n" +
+                "contents of file2.gif\r\n" +
+                "--" + mixedBoundary + "--\r\n" +
+                "--" + boundary + "--\r\n";
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        HttpPostMultipartRequestDecoder decoder =
+                new HttpPostMultipartRequestDecoder(new DefaultHttpDataFactory(false), request);
+        try (DefaultLastHttpContent last = new DefaultLastHttpContent(
+                Helpers.copiedBuffer(body, StandardCharsets.US_ASCII))) {
+            decoder.offer(last);
+        }
+        List<InterfaceHttpData> datas = decoder.getBodyHttpDatas();
+        assertEquals(3, datas.size());
+        assertEquals("Joe Blow", ((Attribute) datas.get(0)).getValue());
+        FileUpload file1 = (FileUpload) datas.get(1);
+        assertEquals("pics", file1.getName());
+        assertEquals("file1.txt", file1.getFilename());
+        assertEquals("text/plain", file1.getContentType());
+        assertEquals("contents of file1.txt", file1.getString(StandardCharsets.US_ASCII));
+        FileUpload file2 = (FileUpload) datas.get(2);
+        assertEquals("pics", file2.getName());
+        assertEquals("file2.gif", file2.getFilename());
+        assertEquals("image/gif", file2.getContentType());
+        assertEquals("binary", file2.getContentTransferEncoding());
+        assertEquals("contents of file2.gif", file2.getString(StandardCharsets.US_ASCII));
+        decoder.destroy();
+    }
+
+    @Test
+    public void testPollUntilEndOfData() throws IOException {
+        final String boundary = "861fbeab-cd20-470c-9609-d40a0f704466";
+        final String body = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"field1\"\r\n" +
+                "\r\n" +
+                "value1\r\n" +
+                "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"field2\"\r\n" +
+                "\r\n" +
+                "value2\r\n" +
+                "--" + boundary + "--\r\n";
+        final int split = body.indexOf("field2");
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        HttpPostMultipartRequestDecoder decoder =
+                new HttpPostMultipartRequestDecoder(new DefaultHttpDataFactory(false), request);
+        try (DefaultHttpContent content = new DefaultHttpContent(
+                Helpers.copiedBuffer(body.substring(0, split), StandardCharsets.US_ASCII))) {
+            decoder.offer(content);
+        }
+        assertEquals("value1", ((Attribute) decoder.poll()).getValue());
+        assertNull(decoder.poll());
+        assertFalse(decoder.isEndOfData());
+
+        try (DefaultLastHttpContent last = new DefaultLastHttpContent(
+                Helpers.copiedBuffer(body.substring(split), StandardCharsets.US_ASCII))) {
+            decoder.offer(last);
+        }
+        assertFalse(decoder.isEndOfData());
+        assertEquals("value2", ((Attribute) decoder.poll()).getValue());
+        assertNull(decoder.poll());
+        assertTrue(decoder.isEndOfData());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testFieldNameCache() throws IOException {
+        final String boundary = "861fbeab-cd20-470c-9609-d40a0f704466";
+        final String body = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"field1\"\r\n" +
+                "\r\n" +
+                "value1\r\n" +
+                "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"file.txt\"\r\n" +
+                "Content-Type: text/plain\r\n" +
+                "\r\n" +
+                "content\r\n" +
+                "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\" a;b \"\r\n" +
+                "\r\n" +
+                "value2\r\n" +
+                "--" + boundary + "--\r\n";
+        DefaultHttpDataFactory factory = new DefaultHttpDataFactory(false);
+        factory.setFieldNameCache(new FieldNameCache(16));
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+            request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+            HttpPostMultipartRequestDecoder decoder = new HttpPostMultipartRequestDecoder(factory, request);
+            try (DefaultLastHttpContent last = new DefaultLastHttpContent(
+                    Helpers.copiedBuffer(body, StandardCharsets.US_ASCII))) {
+                decoder.offer(last);
+            }
+            for (InterfaceHttpData data : decoder.getBodyHttpDatas()) {
+                names.add(data.getName());
+            }
+            assertEquals("file.txt", ((FileUpload) decoder.getBodyHttpData("file")).getFilename());
+            decoder.destroy();
+        }
+
+        assertEquals(Arrays.asList("field1", "file", "a b", "field1", "file", "a b"), names);
+        // the names of the second request are the ones of the first request
+        assertSame(names.get(0), names.get(3));
+        assertSame(names.get(1), names.get(4));
+    }
+
+    @Test
+    public void testPartFilterSkipsRejectedParts() throws IOException {
+        final String boundary = "861fbeab-cd20-470c-9609-d40a0f704466";
+        final String body = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"field1\"\r\n" +
+                "\r\n" +
+                "value1\r\n" +
+                "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"blob\"; filename=\"blob.bin\"\r\n" +
+                "\r\n" +
+                "content of an unwanted file\r\n" +
+                "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"field2\"\r\n" +
+                "\r\n" +
+                "value2\r\n" +
+                "--" + boundary + "--\r\n";
+        final byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        HttpPostMultipartRequestDecoder decoder =
+                new HttpPostMultipartRequestDecoder(new DefaultHttpDataFactory(false), request);
+        decoder.setPartFilter(headers -> !headers.isFileUpload());
+        for (int offset = 0; offset < bytes.length; offset += 10) {
+            Buffer buf = Helpers.copiedBuffer(bytes, offset, Math.min(10, bytes.length - offset));
+            try (DefaultHttpContent content = new DefaultHttpContent(buf)) {
+                decoder.offer(content);
+            }
+        }
+        try (DefaultLastHttpContent last = Helpers.defaultLastHttpContent()) {
+            decoder.offer(last);
+        }
+        List<InterfaceHttpData> datas = decoder.getBodyHttpDatas();
+        assertEquals(2, datas.size());
+        assertEquals("value1", ((Attribute) datas.get(0)).getValue());
+        assertEquals("value2", ((Attribute) datas.get(1)).getValue());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testPartFilterMaxSize() {
+        final String boundary = "861fbeab-cd20-470c-9609-d40a0f704466";
+        final String body = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"field1\"\r\n" +
+                "\r\n" +
+                "a value longer than allowed\r\n" +
+                "--" + boundary + "--\r\n";
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        HttpPostMultipartRequestDecoder decoder =
+                new HttpPostMultipartRequestDecoder(new DefaultHttpDataFactory(false), request);
+        decoder.setPartFilter(new PartFilter() {
+            @Override
+            public boolean accept(PartHeaders headers) {
+                return true;
+            }
+
+            @Override
+            public long maxSize(PartHeaders headers) {
+                return 10;
+            }
+        });
+        try (DefaultLastHttpContent last = new DefaultLastHttpContent(
+                Helpers.copiedBuffer(body, StandardCharsets.US_ASCII))) {
+            assertThrows(HttpPostRequestDecoder.ErrorDataDecoderException.class, () -> decoder.offer(last));
+        }
+        // the partial attribute was released when the part was aborted
+        assertNull(decoder.currentPartialHttpData());
+        decoder.destroy();
+    }
+
     private static void commonNotBadReleaseBuffersDuringDecoding(HttpDataFactory factory, boolean inMemory)
             throws Exception {
         int nbItems = 20;
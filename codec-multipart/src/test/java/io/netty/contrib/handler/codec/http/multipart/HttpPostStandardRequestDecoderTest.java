@@ -26,6 +26,9 @@ import io.netty5.handler.codec.http.HttpMethod;
 import io.netty5.handler.codec.http.HttpRequest;
 import io.netty5.handler.codec.http.HttpVersion;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import io.netty5.handler.codec.http.LastHttpContent;
 import org.junit.jupiter.api.Test;
@@ -109,6 +112,247 @@ class HttpPostStandardRequestDecoderTest {
         }
     }
 
+    @Test
+    void testDecodeLongValuesInSmallChunks() {
+        // delimiters and escapes at every position of the 8 bytes read at once, and split across chunks
+        StringBuilder body = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            body.append("a%2Bb+c-").append(i).append('%');
+            expected.append("a+b c-").append(i).append('%');
+        }
+        String encoded = body.toString().replace("%", "%25").replace("%252B", "%2B");
+        String requestBody = "empty=&key1=" + encoded + "&key2=" + encoded + "\r\n";
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+
+        BufferAllocator alloc = DefaultBufferAllocators.preferredAllocator();
+        for (int chunkSize = 1; chunkSize <= 17; chunkSize++) {
+            Buffer full = alloc.copyOf(requestBody, StandardCharsets.UTF_8);
+            HttpPostStandardRequestDecoder decoder = new HttpPostStandardRequestDecoder(httpDiskDataFactory(), request);
+            while (full.readableBytes() > chunkSize) {
+                try (HttpContent<?> chunk = new DefaultHttpContent(full.readSplit(chunkSize))) {
+                    decoder.offer(chunk);
+                }
+            }
+            try (LastHttpContent<?> last = new DefaultLastHttpContent(full)) {
+                decoder.offer(last);
+            }
+            assertEquals(3, decoder.getBodyHttpDatas().size());
+            assertMemoryAttribute(decoder.getBodyHttpData("empty"), "");
+            assertMemoryAttribute(decoder.getBodyHttpData("key1"), expected.toString());
+            assertMemoryAttribute(decoder.getBodyHttpData("key2"), expected.toString());
+            decoder.destroy();
+        }
+    }
+
+    @Test
+    void testInvalidEscapeAfterDecodedEscape() {
+        String requestBody = "key1=a%20b%2g";
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+
+        HttpPostStandardRequestDecoder decoder = new HttpPostStandardRequestDecoder(httpDiskDataFactory(), request);
+        Buffer buf = DefaultBufferAllocators.preferredAllocator().copyOf(requestBody.getBytes(StandardCharsets.UTF_8));
+        try (DefaultLastHttpContent httpContent = new DefaultLastHttpContent(buf)) {
+            HttpPostRequestDecoder.ErrorDataDecoderException e =
+                    assertThrows(HttpPostRequestDecoder.ErrorDataDecoderException.class,
+                                 () -> decoder.offer(httpContent));
+            // decoded in place up to the invalid escape
+            assertEquals("Invalid hex byte at index '3' in string: 'a b%2g'", e.getMessage());
+        } finally {
+            decoder.destroy();
+        }
+    }
+
+    @Test
+    void testParameterTable() {
+        String requestBody = "&key1=value1&Key2=va%20lue+2&empty&key1=&k%C3%A9y3=%E2%82%AC&KEY1=value3\r\n";
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+
+        BufferAllocator alloc = DefaultBufferAllocators.preferredAllocator();
+        for (int chunkSize = 1; chunkSize <= requestBody.length(); chunkSize++) {
+            Buffer full = alloc.copyOf(requestBody, StandardCharsets.UTF_8);
+            HttpPostStandardRequestDecoder decoder =
+                    new HttpPostStandardRequestDecoder(request, StandardCharsets.UTF_8, true);
+            while (full.readableBytes() > chunkSize) {
+                try (HttpContent<?> chunk = new DefaultHttpContent(full.readSplit(chunkSize))) {
+                    decoder.offer(chunk);
+                }
+            }
+            try (LastHttpContent<?> last = new DefaultLastHttpContent(full)) {
+                decoder.offer(last);
+            }
+            assertTrue(decoder.getBodyHttpDatas().isEmpty());
+
+            FormParameters parameters = decoder.parameters();
+            assertEquals(6, parameters.size());
+            assertEquals("Key2", parameters.name(1));
+            assertEquals("va lue 2", parameters.value(1));
+            assertEquals("empty", parameters.name(2));
+            assertEquals("", parameters.value(2));
+            assertEquals("value1", parameters.get("KEY1"));
+            assertEquals(Arrays.asList("value1", "", "value3"), parameters.getAll("key1"));
+            assertEquals("va lue 2", parameters.get("key2"));
+            assertEquals("\u20ac", parameters.get("k\u00e9y3"));
+            assertTrue(parameters.contains("empty"));
+            assertFalse(parameters.contains("key"));
+            assertNull(parameters.get("missing"));
+            assertTrue(parameters.getAll("missing").isEmpty());
+            decoder.destroy();
+        }
+    }
+
+    @Test
+    void testVisitor() {
+        String largeValue = "a+b%2Cc".repeat(1000);
+        String requestBody = "key1=value1&key2=" + largeValue + "&empty&k%C3%A9y3=";
+
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        List<String> events = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        int[] valueChunks = new int[1];
+        FormParamVisitor visitor = new FormParamVisitor() {
+            @Override
+            public void onKey(Buffer key) {
+                try (key) {
+                    events.add("key:" + key.toString(StandardCharsets.UTF_8));
+                }
+            }
+
+            @Override
+            public void onValueChunk(Buffer content, boolean last) {
+                try (content) {
+                    value.append(content.toString(StandardCharsets.UTF_8));
+                }
+                valueChunks[0]++;
+                if (last) {
+                    events.add("value:" + value);
+                    value.setLength(0);
+                }
+            }
+        };
+
+        HttpPostStandardRequestDecoder decoder =
+                new HttpPostStandardRequestDecoder(request, StandardCharsets.UTF_8, visitor);
+        Buffer full = DefaultBufferAllocators.preferredAllocator().copyOf(requestBody, StandardCharsets.UTF_8);
+        while (full.readableBytes() > 256) {
+            try (HttpContent<?> chunk = new DefaultHttpContent(full.readSplit(256))) {
+                decoder.offer(chunk);
+            }
+        }
+        try (LastHttpContent<?> last = new DefaultLastHttpContent(full)) {
+            decoder.offer(last);
+        }
+
+        assertEquals(Arrays.asList("key:key1", "value:value1",
+                                   "key:key2", "value:" + largeValue.replace('+', ' ').replace("%2C", ","),
+                                   "key:empty", "value:",
+                                   "key:k\u00e9y3", "value:"), events);
+        // the large value is pushed chunk by chunk
+        assertTrue(valueChunks[0] > requestBody.length() / 256);
+        assertTrue(decoder.getBodyHttpDatas().isEmpty());
+        assertNull(decoder.parameters());
+        assertTrue(decoder.isEndOfData());
+        decoder.destroy();
+    }
+
+    @Test
+    void testPollUntilEndOfData() {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+
+        HttpPostStandardRequestDecoder decoder = new HttpPostStandardRequestDecoder(httpDiskDataFactory(), request);
+        Buffer first = DefaultBufferAllocators.preferredAllocator().copyOf("key1=value1&ke",
+                                                                           StandardCharsets.UTF_8);
+        try (DefaultHttpContent httpContent = new DefaultHttpContent(first)) {
+            decoder.offer(httpContent);
+        }
+        assertMemoryAttribute(decoder.poll(), "value1");
+        assertNull(decoder.poll());
+        assertFalse(decoder.isEndOfData());
+
+        Buffer last = DefaultBufferAllocators.preferredAllocator().copyOf("y2=value2".getBytes(StandardCharsets.UTF_8));
+        try (DefaultLastHttpContent httpContent = new DefaultLastHttpContent(last)) {
+            decoder.offer(httpContent);
+        }
+        assertFalse(decoder.isEndOfData());
+        assertMemoryAttribute(decoder.poll(), "value2");
+        assertNull(decoder.poll());
+        assertTrue(decoder.isEndOfData());
+        decoder.destroy();
+    }
+
+    @Test
+    void testDefaultPollUntilEndOfData() {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+
+        InterfaceHttpPostRequestDecoder decoder =
+                new DelegatingDecoder(new HttpPostStandardRequestDecoder(httpDiskDataFactory(), request));
+        Buffer first = DefaultBufferAllocators.preferredAllocator().copyOf("key1=value1&ke", StandardCharsets.UTF_8);
+        try (DefaultHttpContent httpContent = new DefaultHttpContent(first)) {
+            decoder.offer(httpContent);
+        }
+        assertMemoryAttribute(decoder.poll(), "value1");
+        assertNull(decoder.poll());
+        assertFalse(decoder.isEndOfData());
+
+        Buffer last = DefaultBufferAllocators.preferredAllocator().copyOf("y2=value2", StandardCharsets.UTF_8);
+        try (DefaultLastHttpContent httpContent = new DefaultLastHttpContent(last)) {
+            decoder.offer(httpContent);
+        }
+        assertFalse(decoder.isEndOfData());
+        assertMemoryAttribute(decoder.poll(), "value2");
+        assertNull(decoder.poll());
+        assertTrue(decoder.isEndOfData());
+        decoder.destroy();
+    }
+
+    @Test
+    void testFieldNameCache() {
+        DefaultHttpDataFactory factory = new DefaultHttpDataFactory(false);
+        factory.setFieldNameCache(new FieldNameCache(64));
+
+        List<String> names = new ArrayList<>();
+        for (String requestBody : new String[] {"key1=value1&k%C3%A9y2=value2", "key1=value3&k%C3%A9y2=value4"}) {
+            HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+            HttpPostStandardRequestDecoder decoder =
+                    new HttpPostStandardRequestDecoder(factory, request, StandardCharsets.UTF_8);
+            Buffer buf = DefaultBufferAllocators.preferredAllocator().copyOf(requestBody, StandardCharsets.UTF_8);
+            try (DefaultLastHttpContent httpContent = new DefaultLastHttpContent(buf)) {
+                decoder.offer(httpContent);
+            }
+            for (InterfaceHttpData data : decoder.getBodyHttpDatas()) {
+                names.add(data.getName());
+            }
+            decoder.destroy();
+        }
+
+        assertEquals(Arrays.asList("key1", "k\u00e9y2", "key1", "k\u00e9y2"), names);
+        // the names of the second request are the ones of the first request
+        assertSame(names.get(0), names.get(2));
+        assertSame(names.get(1), names.get(3));
+
+        // a name replaces the one of the same slot, so the cache stays bounded
+        FieldNameCache cache = new FieldNameCache(4);
+        factory.setFieldNameCache(cache);
+        StringBuilder requestBody = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            requestBody.append("name").append(i).append("=value&");
+        }
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        HttpPostStandardRequestDecoder decoder = new HttpPostStandardRequestDecoder(factory, request);
+        Buffer buf = DefaultBufferAllocators.preferredAllocator().copyOf(requestBody.toString(),
+                                                                         StandardCharsets.UTF_8);
+        try (DefaultLastHttpContent httpContent = new DefaultLastHttpContent(buf)) {
+            decoder.offer(httpContent);
+        }
+        assertEquals(100, decoder.getBodyHttpDatas().size());
+        assertEquals("name99", decoder.getBodyHttpDatas().get(99).getName());
+        assertTrue(cache.size() <= 4);
+        decoder.destroy();
+    }
+
     private static DefaultHttpDataFactory httpDiskDataFactory() {
         return new DefaultHttpDataFactory(false);
     }
@@ -118,4 +362,80 @@ class HttpPostStandardRequestDecoderTest {
         assertEquals(expectedValue, ((MemoryAttribute) data).getValue());
     }
 
+
+    /**
+     * Decoder implementing only the abstract methods, to check the default ones
+     */
+    private static final class DelegatingDecoder implements InterfaceHttpPostRequestDecoder {
+        private final InterfaceHttpPostRequestDecoder decoder;
+
+        DelegatingDecoder(InterfaceHttpPostRequestDecoder decoder) {
+            this.decoder = decoder;
+        }
+
+        @Override
+        public boolean isMultipart() {
+            return decoder.isMultipart();
+        }
+
+        @Override
+        public void setDiscardThreshold(int discardThreshold) {
+        }
+
+        @Override
+        public int getDiscardThreshold() {
+            return 0;
+        }
+
+        @Override
+        public List<InterfaceHttpData> getBodyHttpDatas() {
+            return decoder.getBodyHttpDatas();
+        }
+
+        @Override
+        public List<InterfaceHttpData> getBodyHttpDatas(String name) {
+            return decoder.getBodyHttpDatas(name);
+        }
+
+        @Override
+        public InterfaceHttpData getBodyHttpData(String name) {
+            return decoder.getBodyHttpData(name);
+        }
+
+        @Override
+        public InterfaceHttpPostRequestDecoder offer(HttpContent<?> content) {
+            decoder.offer(content);
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return decoder.hasNext();
+        }
+
+        @Override
+        public InterfaceHttpData next() {
+            return decoder.next();
+        }
+
+        @Override
+        public InterfaceHttpData currentPartialHttpData() {
+            return decoder.currentPartialHttpData();
+        }
+
+        @Override
+        public void destroy() {
+            decoder.destroy();
+        }
+
+        @Override
+        public void cleanFiles() {
+            decoder.cleanFiles();
+        }
+
+        @Override
+        public void removeHttpDataFromClean(InterfaceHttpData data) {
+            decoder.removeHttpDataFromClean(data);
+        }
+    }
 }
@@ -15,9 +15,18 @@
  */
 package io.netty.contrib.handler.codec.http.multipart;
 
+import io.netty5.buffer.Buffer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @ExtendWith(GCExtension.class)
@@ -29,4 +38,54 @@ public class MemoryFileUploadTest {
             assertEquals(f1, f1);
         }
     }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        byte[] bytes = "{\"hello\":\"world\"}".getBytes(StandardCharsets.UTF_8);
+        try (MemoryFileUpload f1 =
+                new MemoryFileUpload("m2", "m2", "application/json", null, null, 100)) {
+            f1.setContent(Helpers.copiedBuffer(bytes));
+            try (InputStream stream = f1.openInputStream();
+                 ReadableByteChannel channel = f1.openChannel()) {
+                assertEquals('{', stream.read());
+                ByteBuffer content = ByteBuffer.allocate(bytes.length);
+                while (channel.read(content) > 0) {
+                    // read all
+                }
+                assertArrayEquals(bytes, content.array());
+                assertArrayEquals("\"hello\":\"world\"}".getBytes(StandardCharsets.UTF_8), stream.readAllBytes());
+                assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+            }
+            // The content is not consumed by the readers
+            assertArrayEquals(bytes, f1.get());
+
+            // but the bytes of the chunks are given away
+            try (Buffer chunk = f1.getChunk(9)) {
+                assertEquals(9, chunk.readableBytes());
+            }
+            try (InputStream stream = f1.openInputStream()) {
+                assertArrayEquals("\"world\"}".getBytes(StandardCharsets.UTF_8), stream.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    public void testTransferTo() throws Exception {
+        byte[] bytes = "{\"hello\":\"world\"}".getBytes(StandardCharsets.UTF_8);
+        try (MemoryFileUpload f1 =
+                new MemoryFileUpload("m3", "m3", "application/json", null, null, 100)) {
+            f1.addContent(Helpers.copiedBuffer(bytes, 0, 8), false);
+            f1.addContent(Helpers.copiedBuffer(bytes, 8, bytes.length - 8), true);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(bytes.length, f1.transferTo(Channels.newChannel(out), 0, Long.MAX_VALUE));
+            assertArrayEquals(bytes, out.toByteArray());
+
+            out.reset();
+            assertEquals(7, f1.transferTo(Channels.newChannel(out), 2, 7));
+            assertEquals("hello\":", out.toString(StandardCharsets.UTF_8));
+            assertEquals(0, f1.transferTo(Channels.newChannel(out), bytes.length, 1));
+            // The content is not consumed by the transfers
+            assertArrayEquals(bytes, f1.get());
+        }
+    }
 }
@@ -61,4 +61,31 @@ public class MixedTest {
         Assertions.assertFalse(buf2.isAccessible());
         upload.close();
     }
+
+    @Test
+    public void mixedFileUploadMemoryBudget() throws IOException {
+        MemoryBudget budget = new MemoryBudget(150);
+        MixedFileUpload upload1 = new MixedFileUpload("foo", "foo", "foo", "UTF-8", StandardCharsets.UTF_8, 0, 100);
+        MixedFileUpload upload2 = new MixedFileUpload("bar", "bar", "foo", "UTF-8", StandardCharsets.UTF_8, 0, 100);
+        upload1.setMemoryBudget(budget);
+        upload2.setMemoryBudget(budget);
+
+        upload1.addContent(Helpers.copiedBuffer(new byte[90]), false);
+        Assertions.assertTrue(upload1.isInMemory());
+        Assertions.assertEquals(90, budget.used());
+
+        upload2.addContent(Helpers.copiedBuffer(new byte[50]), false);
+        Assertions.assertTrue(upload2.isInMemory());
+        Assertions.assertEquals(140, budget.used());
+
+        // Below the limit size of the upload, but above the high watermark of the budget
+        upload2.addContent(Helpers.copiedBuffer(new byte[20]), true);
+        Assertions.assertFalse(upload2.isInMemory());
+        Assertions.assertEquals(90, budget.used());
+        Assertions.assertEquals(70, upload2.length());
+
+        upload1.close();
+        Assertions.assertEquals(0, budget.used());
+        upload2.close();
+    }
 }